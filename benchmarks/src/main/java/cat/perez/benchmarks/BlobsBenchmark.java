@@ -0,0 +1,58 @@
+package cat.perez.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.perez.kmeans.Blobs;
+import cat.perez.kmeans.Dataset;
+
+/**
+ * The shape of the generated data, shared by every benchmark. Any parameter can
+ * be overridden from the command line, e.g. <code>-p N=1000000 -p D=64</code>.
+ *
+ * Built with <code>mvn package</code> from the project root and run headless with
+ * <code>java -jar benchmarks/target/benchmarks.jar -prof gc</code> to also report allocation rates.
+ *
+ * @author Unai & Vicent Perez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class BlobsBenchmark {
+
+	@Param({"100000"})
+	public int N;
+
+	@Param({"2", "16"})
+	public int D;
+
+	@Param({"10"})
+	public int K;
+
+	@Param({"5"})
+	public double separation;
+
+	@Param({"1"})
+	public int threads;
+
+	protected Dataset dataset;
+
+	@Setup
+	public void generate() {
+		this.dataset = Blobs.generate(N, D, K, separation, 42);
+	}
+
+}
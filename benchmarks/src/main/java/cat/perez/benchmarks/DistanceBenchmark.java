@@ -0,0 +1,86 @@
+package cat.perez.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.perez.kmeans.Blobs;
+import cat.perez.kmeans.Dataset;
+import cat.perez.kmeans.Distance;
+import cat.perez.kmeans.DistanceKernel;
+import cat.perez.kmeans.Seeding;
+
+/**
+ * One nearest centroid pass over every row by each {@link Distance}, on the
+ * default kernel. <code>kernel</code> calls the kernel straight, as the
+ * assignment did before distances could be chosen, so that the cost of going
+ * through the metric shows against <code>EUCLIDEAN</code>.
+ *
+ * @author Unai & Vicent Perez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class DistanceBenchmark {
+
+	@Param({"100000"})
+	public int N;
+
+	@Param({"8", "32", "128"})
+	public int D;
+
+	@Param({"32"})
+	public int K;
+
+	@Param({"EUCLIDEAN", "MANHATTAN", "COSINE"})
+	public String distance;
+
+	private Dataset dataset;
+	private Distance metric;
+	private DistanceKernel kernel;
+	private double [] centroids;
+
+	@Setup
+	public void seed() {
+		this.dataset = Blobs.generate(N, D, K, 5, 42);
+		this.metric = Distance.valueOf(distance);
+		this.kernel = DistanceKernel.getDefault();
+		// Prepared outside of the measurement, as a K-Means run does once
+		metric.prepare(dataset);
+		double [][] seeds = Seeding.RANDOM.seed(dataset, K, new Random(7), 1);
+		this.centroids = new double [K * D];
+		for (int k = 0; k < K; k++) System.arraycopy(seeds[k], 0, centroids, k * D, D);
+		metric.prepare(centroids, K, D);
+	}
+
+	@Benchmark
+	public long nearest() {
+		double [] values = dataset.getValues();
+		long checksum = 0;
+		for (int i = 0, offset = 0; i < dataset.size(); i++, offset += D) checksum += metric.nearest(values, offset, centroids, K, D, kernel);
+		return checksum;
+	}
+
+	@Benchmark
+	public long kernel() {
+		double [] values = dataset.getValues();
+		long checksum = 0;
+		for (int i = 0, offset = 0; i < dataset.size(); i++, offset += D) checksum += kernel.nearest(values, offset, centroids, K, D);
+		return checksum;
+	}
+
+}
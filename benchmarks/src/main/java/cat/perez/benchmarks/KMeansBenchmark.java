@@ -0,0 +1,56 @@
+package cat.perez.benchmarks;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import cat.perez.kmeans.KDTree;
+import cat.perez.kmeans.KMeans;
+import cat.perez.kmeans.Seeding;
+
+/**
+ * A single Lloyd iteration and a full run to convergence, both from the same
+ * k-means++ centroids so that every engine does exactly the same work.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class KMeansBenchmark extends BlobsBenchmark {
+
+	/** An {@link KMeans.Algorithm} name, or TREE for the kd-tree. */
+	@Param({"LLOYD", "AUTO", "TREE"})
+	public String algorithm;
+
+	private double [][] seeds;
+	private KDTree tree;
+
+	@Setup
+	public void seed() {
+		this.seeds = Seeding.KMEANS_PLUS_PLUS.seed(dataset, K, new Random(7), 1);
+		this.tree = "TREE".equals(algorithm) ? new KDTree(dataset) : null;
+	}
+
+	@Benchmark
+	public double [][] lloydIteration() {
+		return run(1);
+	}
+
+	@Benchmark
+	public double [][] convergence() {
+		return run(Integer.MAX_VALUE);
+	}
+
+	private double [][] run(int maxIterations) {
+		KMeans kmeans = new KMeans(dataset, K, maxIterations);
+		kmeans.setThreads(threads);
+		if (tree != null) kmeans.setTree(tree);
+		else kmeans.setAlgorithm(KMeans.Algorithm.valueOf(algorithm));
+		double [][] centroids = new double [K][];
+		for (int k = 0; k < K; k++) centroids[k] = seeds[k].clone();
+		kmeans.setCentroids(centroids);
+		kmeans.run();
+		return kmeans.getCentroids();
+	}
+
+}
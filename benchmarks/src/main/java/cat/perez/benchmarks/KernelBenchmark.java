@@ -0,0 +1,91 @@
+package cat.perez.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cat.perez.kmeans.Blobs;
+import cat.perez.kmeans.Dataset;
+import cat.perez.kmeans.DistanceKernel;
+import cat.perez.kmeans.Seeding;
+
+/**
+ * One nearest centroid pass over every row, the inner loop of a Lloyd iteration,
+ * with the scalar kernel and with the default one, which is the SIMD kernel as
+ * long as the fork can load the incubating Vector API. Has dimensions of its own,
+ * wider than those of {@link BlobsBenchmark}.
+ *
+ * @author Unai & Vicent Perez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+
+	@Param({"100000"})
+	public int N;
+
+	@Param({"8", "32", "128"})
+	public int D;
+
+	@Param({"32"})
+	public int K;
+
+	/** SCALAR, or DEFAULT for {@link DistanceKernel#getDefault()}. */
+	@Param({"SCALAR", "DEFAULT"})
+	public String kernel;
+
+	@Param({"false", "true"})
+	public boolean float32;
+
+	private Dataset dataset;
+	private DistanceKernel distanceKernel;
+	private double [] centroids;
+	private float [] floatCentroids;
+
+	@Setup
+	public void seed() {
+		this.dataset = Blobs.generate(N, D, K, 5, 42);
+		this.distanceKernel = "SCALAR".equals(kernel) ? DistanceKernel.SCALAR : DistanceKernel.getDefault();
+		double [][] seeds = Seeding.RANDOM.seed(dataset, K, new Random(7), 1);
+		this.centroids = new double [K * D];
+		this.floatCentroids = new float [K * D];
+		for (int k = 0; k < K; k++) {
+			for (int j = 0; j < D; j++) {
+				centroids[k * D + j] = seeds[k][j];
+				floatCentroids[k * D + j] = (float) seeds[k][j];
+			}
+		}
+		// Made outside of the measurement, as a K-Means run does once
+		if (float32) dataset.getFloatCache();
+	}
+
+	@Benchmark
+	public long nearest() {
+		int N = dataset.size();
+		long checksum = 0;
+		if (float32) {
+			float [] values = dataset.getFloatCache();
+			for (int i = 0, offset = 0; i < N; i++, offset += D) checksum += distanceKernel.nearest(values, offset, floatCentroids, K, D);
+		} else {
+			double [] values = dataset.getValues();
+			for (int i = 0, offset = 0; i < N; i++, offset += D) checksum += distanceKernel.nearest(values, offset, centroids, K, D);
+		}
+		return checksum;
+	}
+
+}
@@ -0,0 +1,23 @@
+package cat.perez.benchmarks;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+import cat.perez.kmeans.Seeding;
+
+/**
+ * @author Unai & Vicent Perez
+ */
+public class SeedingBenchmark extends BlobsBenchmark {
+
+	@Param({"RANDOM", "KMEANS_PLUS_PLUS", "KMEANS_PARALLEL"})
+	public Seeding seeding;
+
+	@Benchmark
+	public double [][] seed() {
+		return seeding.seed(dataset, K, new Random(7), threads);
+	}
+
+}
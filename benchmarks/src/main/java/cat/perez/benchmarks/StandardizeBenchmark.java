@@ -0,0 +1,21 @@
+package cat.perez.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import cat.perez.ColumnStatistics;
+
+/**
+ * The numeric part of the plugin's <code>Utils.standardize</code>: one pass gathering
+ * the column statistics and one standardizing in place. Reading the KNIME table is
+ * left out, as it needs a running KNIME.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class StandardizeBenchmark extends BlobsBenchmark {
+
+	@Benchmark
+	public ColumnStatistics standardize() {
+		return ColumnStatistics.standardize(dataset.getValues(), D);
+	}
+
+}
@@ -0,0 +1,47 @@
+package cat.perez.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import cat.perez.kmeans.ClusterStatistics;
+import cat.perez.kmeans.KMeans;
+import cat.perez.xmeans.XMeans;
+
+/**
+ * A BIC evaluation over the K clusters of the data and a whole X-Means search
+ * from 2 up to 2K clusters.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class XMeansBenchmark extends BlobsBenchmark {
+
+	@Param({"false", "true"})
+	public boolean kdTree;
+
+	private ClusterStatistics statistics;
+
+	@Setup
+	public void cluster() {
+		KMeans kmeans = new KMeans(dataset, K, Integer.MAX_VALUE);
+		kmeans.setSeed(7);
+		kmeans.run();
+		this.statistics = kmeans.getStatistics();
+	}
+
+	@Benchmark
+	public double bic() {
+		return XMeans.BIC(statistics, K);
+	}
+
+	@Benchmark
+	public XMeans search() {
+		XMeans xmeans = new XMeans(dataset.copy(), 2, 2 * K);
+		xmeans.setThreads(threads);
+		xmeans.setSeed(7);
+		xmeans.setKDTree(kdTree);
+		xmeans.run();
+		return xmeans;
+	}
+
+}
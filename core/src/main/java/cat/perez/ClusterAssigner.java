@@ -0,0 +1,58 @@
+package cat.perez;
+
+import cat.perez.kmeans.Distance;
+import cat.perez.kmeans.DistanceKernel;
+
+/**
+ * Assigns new rows, given in input units, to the closest of a set of centroids
+ * in standardized coordinates, standardizing and preparing each row exactly as
+ * the clustered rows were. Rows are scored one at a time into a reused buffer,
+ * so an assigner is not thread safe.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterAssigner {
+
+	private final double [] means;
+	private final double [] stdDevs;
+	private final Distance distance;
+	private final DistanceKernel kernel;
+	private final double [] centroids;
+	private final int K;
+	private final double [] row;
+
+	/**
+	 * @param centroids K row-major centroids of <code>means.length</code> standardized coordinates, copied
+	 * @param means the mean every column was standardized with
+	 * @param stdDevs the standard deviation every column was standardized with, zero for constant columns
+	 */
+	public ClusterAssigner(double [] centroids, double [] means, double [] stdDevs, Distance distance, DistanceKernel kernel) {
+		int D = means.length;
+		if (D == 0 || stdDevs.length != D || centroids.length == 0 || centroids.length % D != 0) {
+			throw new IllegalArgumentException("Expected centroids of " + D + " coordinates but got " + centroids.length + " values");
+		}
+		this.means = means.clone();
+		this.stdDevs = new double [D];
+		for (int j = 0; j < D; j++) this.stdDevs[j] = stdDevs[j] > 0 ? stdDevs[j] : 1;
+		this.distance = distance;
+		this.kernel = kernel;
+		this.K = centroids.length / D;
+		this.centroids = centroids.clone();
+		distance.prepare(this.centroids, K, D);
+		this.row = new double [D];
+	}
+
+	public int getDimensions() {
+		return this.row.length;
+	}
+
+	/**
+	 * @return the closest centroid to the row once standardized, the lowest one on ties
+	 */
+	public int assign(double [] values) {
+		for (int j = 0; j < row.length; j++) row[j] = (values[j] - means[j]) / stdDevs[j];
+		distance.prepare(row, 1, row.length);
+		return distance.nearest(row, 0, centroids, K, row.length, kernel);
+	}
+
+}
@@ -0,0 +1,145 @@
+package cat.perez;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import cat.perez.kmeans.Distance;
+
+/**
+ * The result of a clustering run that is needed to score new rows: the centroids,
+ * in standardized coordinates, the column means and standard deviations they were
+ * standardized with, the distance rows were assigned by and the amount of rows of
+ * every cluster.
+ *
+ * The model is kept in a single buffer laid out exactly as its file, so writing
+ * it is one copy and reading it is a memory map, whatever K and D:
+ * <pre>
+ * int magic, int version, int K, int D, int distance, int unused
+ * double [D] means
+ * double [D] standard deviations
+ * long [K] cluster sizes
+ * double [K x D] centroids, row-major
+ * </pre>
+ * Files of a version other than the one this class writes are rejected.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterModel {
+
+	private static final int MAGIC = 0x584d4e53;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 24;
+
+	private final ByteBuffer buffer;
+	private final int K;
+	private final int D;
+	private final Distance distance;
+
+	/**
+	 * @param assignments the cluster of every clustered row, to count the cluster sizes
+	 * @param columns the statistics the clustered rows were standardized with
+	 * @param distance the distance the rows were assigned by
+	 */
+	public ClusterModel(double [][] centroids, int [] assignments, ColumnStatistics columns, Distance distance) {
+		this.K = centroids.length;
+		this.D = K > 0 ? centroids[0].length : 0;
+		this.distance = distance;
+		this.buffer = ByteBuffer.allocate(bytes(K, D));
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(K).putInt(D).putInt(distance.ordinal()).putInt(0);
+		for (int j = 0; j < D; j++) buffer.putDouble(columns.getMean(j));
+		for (int j = 0; j < D; j++) buffer.putDouble(columns.getStdDev(j));
+		long [] sizes = new long [K];
+		for (int k : assignments) if (k >= 0) sizes[k]++;
+		for (int k = 0; k < K; k++) buffer.putLong(sizes[k]);
+		for (int k = 0; k < K; k++) {
+			for (int j = 0; j < D; j++) buffer.putDouble(centroids[k][j]);
+		}
+		buffer.clear();
+	}
+
+	private ClusterModel(ByteBuffer buffer) throws IOException {
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) throw new IOException("Not a cluster model file");
+		int version = buffer.getInt(4);
+		if (version != VERSION) throw new IOException("Unsupported cluster model version " + version);
+		this.K = buffer.getInt(8);
+		this.D = buffer.getInt(12);
+		int distance = buffer.getInt(16);
+		if (distance < 0 || distance >= Distance.values().length) throw new IOException("Unknown distance " + distance);
+		this.distance = Distance.values()[distance];
+		if (K < 0 || D < 0 || buffer.capacity() != bytes(K, D)) throw new IOException("Truncated cluster model file");
+		this.buffer = buffer;
+	}
+
+	private static int bytes(int K, int D) {
+		long bytes = HEADER_BYTES + 8L * (2L * D + K + (long) K * D);
+		if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("A model of " + K + "x" + D + " does not fit in a single buffer");
+		return (int) bytes;
+	}
+
+	/**
+	 * Maps the given file read-only; the values are only read when asked for.
+	 */
+	public static ClusterModel read(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException("Cluster model file too large");
+			return new ClusterModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	public void write(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer source = buffer.duplicate();
+			source.clear();
+			while (source.hasRemaining()) channel.write(source);
+		}
+	}
+
+	public int getK() {
+		return this.K;
+	}
+
+	public int getDimensions() {
+		return this.D;
+	}
+
+	public Distance getDistance() {
+		return this.distance;
+	}
+
+	public double getMean(int column) {
+		return buffer.getDouble(HEADER_BYTES + 8 * column);
+	}
+
+	/**
+	 * @return the sample standard deviation of the column, zero for constant columns
+	 */
+	public double getStdDev(int column) {
+		return buffer.getDouble(HEADER_BYTES + 8 * (D + column));
+	}
+
+	public long getSize(int k) {
+		return buffer.getLong(HEADER_BYTES + 8 * (2 * D + k));
+	}
+
+	/**
+	 * @return the standardized coordinate <code>column</code> of centroid <code>k</code>
+	 */
+	public double getCentroid(int k, int column) {
+		return buffer.getDouble(HEADER_BYTES + 8 * (2 * D + K + k * D + column));
+	}
+
+	/**
+	 * @return every centroid, in standardized coordinates
+	 */
+	public double [][] getCentroids() {
+		double [][] centroids = new double [K][D];
+		for (int k = 0; k < K; k++) {
+			for (int j = 0; j < D; j++) centroids[k][j] = getCentroid(k, j);
+		}
+		return centroids;
+	}
+
+}
@@ -0,0 +1,93 @@
+package cat.perez;
+
+/**
+ * Running per-column mean and standard deviation, accumulated in a single pass
+ * with Welford's algorithm so the data never has to be read twice.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ColumnStatistics {
+
+	private final int D;
+	private final double [] means;
+	private final double [] m2;
+	private long count = 0;
+
+	public ColumnStatistics(int D) {
+		this.D = D;
+		this.means = new double [D];
+		this.m2 = new double [D];
+	}
+
+	/**
+	 * Gathers the statistics of a row-major array of <code>D</code> columns and
+	 * standardizes it in place with them.
+	 */
+	public static ColumnStatistics standardize(double [] values, int D) {
+		ColumnStatistics statistics = new ColumnStatistics(D);
+		for (int offset = 0; offset < values.length; offset += D) statistics.add(values, offset);
+		statistics.standardize(values);
+		return statistics;
+	}
+
+	/**
+	 * Adds the row of <code>D</code> values starting at <code>offset</code>.
+	 */
+	public void add(double [] values, int offset) {
+		count++;
+		for (int j = 0; j < D; j++) {
+			double delta = values[offset + j] - means[j];
+			means[j] += delta / count;
+			m2[j] += delta * (values[offset + j] - means[j]);
+		}
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	public double getMean(int column) {
+		return this.means[column];
+	}
+
+	/**
+	 * @return the sample standard deviation of the column
+	 */
+	public double getStdDev(int column) {
+		return count > 1 ? Math.sqrt(m2[column] / (count - 1)) : 0;
+	}
+
+	/**
+	 * @return the given value of a column standardized with these statistics, as
+	 * {@link #standardize(double[])} would
+	 */
+	public double standardize(int column, double value) {
+		double stdDev = getStdDev(column);
+		return (value - means[column]) / (stdDev > 0 ? stdDev : 1);
+	}
+
+	/**
+	 * @return a value standardized with the given mean and standard deviation, back
+	 * in the units of its column; a zero standard deviation is taken as 1, as
+	 * standardizing a constant column only centers it
+	 */
+	public static double destandardize(double value, double mean, double stdDev) {
+		return mean + value * (stdDev > 0 ? stdDev : 1);
+	}
+
+	/**
+	 * Standardizes, in place, every row of the given row-major array.
+	 * Constant columns are only centered.
+	 */
+	public void standardize(double [] values) {
+		double [] stdDevs = new double [D];
+		for (int j = 0; j < D; j++) {
+			double stdDev = getStdDev(j);
+			stdDevs[j] = stdDev > 0 ? stdDev : 1;
+		}
+		for (int offset = 0; offset < values.length; offset += D) {
+			for (int j = 0; j < D; j++) values[offset + j] = (values[offset + j] - means[j]) / stdDevs[j];
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+package cat.perez;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counters and timings gathered during a clustering run. The engines only add to
+ * them once per phase or iteration, never per row, so gathering them is free.
+ *
+ * Runs may share an instance across threads, every method is synchronized.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class Metrics {
+
+	public static final String INGEST = "Ingest";
+	public static final String STANDARDIZATION = "Standardization";
+	public static final String SEEDING = "Seeding";
+	public static final String CLUSTERING = "Clustering";
+	public static final String SPLIT_TRIALS = "Split trials";
+
+	public static final String ITERATIONS = "Iterations";
+	public static final String DISTANCES = "Distance computations";
+	public static final String SKIPPED_DISTANCES = "Distance computations skipped";
+	public static final String SPLITS_ACCEPTED = "Split trials accepted";
+	public static final String SPLITS_REJECTED = "Split trials rejected";
+	public static final String BIC_EVALUATIONS = "BIC evaluations";
+	public static final String PEAK_BYTES = "Peak dataset bytes";
+
+	private final Map<String, Long> times = new LinkedHashMap<>();
+	private final Map<String, Long> counters = new LinkedHashMap<>();
+	private final Map<String, Long> peaks = new LinkedHashMap<>();
+
+	private int iterations = 0;
+	private int rounds = 0;
+	private int clusters = 0;
+	private int [] moved = new int [16];
+	private long [] distances = new long [16];
+	private int [] roundOf = new int [16];
+	private int [] clustersOf = new int [16];
+
+	public synchronized void time(String phase, long nanos) {
+		times.merge(phase, nanos, Long::sum);
+	}
+
+	public synchronized void count(String counter, long amount) {
+		counters.merge(counter, amount, Long::sum);
+	}
+
+	public synchronized void peak(String peak, long value) {
+		peaks.merge(peak, value, Math::max);
+	}
+
+	/**
+	 * Starts a new round, that of a top level run with <code>K</code> clusters.
+	 * The iterations recorded next belong to it.
+	 */
+	public synchronized void round(int K) {
+		rounds++;
+		clusters = K;
+	}
+
+	/**
+	 * Records one iteration of the current round, along with its share of the counters.
+	 */
+	public synchronized void iteration(int rowsMoved, long computed, long skipped) {
+		if (iterations == moved.length) {
+			moved = Arrays.copyOf(moved, 2 * iterations);
+			distances = Arrays.copyOf(distances, 2 * iterations);
+			roundOf = Arrays.copyOf(roundOf, 2 * iterations);
+			clustersOf = Arrays.copyOf(clustersOf, 2 * iterations);
+		}
+		moved[iterations] = rowsMoved;
+		roundOf[iterations] = rounds;
+		clustersOf[iterations] = clusters;
+		distances[iterations++] = computed;
+		count(ITERATIONS, 1);
+		count(DISTANCES, computed);
+		count(SKIPPED_DISTANCES, skipped);
+	}
+
+	/**
+	 * Adds the counters and peaks of a nested run, but neither its iterations nor
+	 * its timings: nested runs may overlap each other, and their time is already
+	 * part of the phase of the run that made them.
+	 */
+	public synchronized void add(Metrics other) {
+		synchronized (other) {
+			other.counters.forEach(this::count);
+			other.peaks.forEach(this::peak);
+		}
+	}
+
+	public synchronized int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * @return the round, counted from 1, that the given recorded iteration belongs to
+	 */
+	public synchronized int getRound(int iteration) {
+		return this.roundOf[iteration];
+	}
+
+	/**
+	 * @return how many clusters the run of the given recorded iteration had
+	 */
+	public synchronized int getClusters(int iteration) {
+		return this.clustersOf[iteration];
+	}
+
+	/**
+	 * @return how many rows changed cluster in the given recorded iteration
+	 */
+	public synchronized int getMoved(int iteration) {
+		return this.moved[iteration];
+	}
+
+	/**
+	 * @return how many point to centroid distances the given recorded iteration computed
+	 */
+	public synchronized long getDistances(int iteration) {
+		return this.distances[iteration];
+	}
+
+	/**
+	 * @return every timing in milliseconds, counter and peak, by name, in the order they first appeared
+	 */
+	public synchronized Map<String, Double> getSummary() {
+		Map<String, Double> summary = new LinkedHashMap<>();
+		times.forEach((phase, nanos) -> summary.put(phase + " time (ms)", nanos / 1e6));
+		counters.forEach((counter, value) -> summary.put(counter, (double) value));
+		peaks.forEach((peak, value) -> summary.put(peak, (double) value));
+		return summary;
+	}
+
+}
@@ -0,0 +1,52 @@
+package cat.perez;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives the progress of a clustering run and lets it be cancelled. The engines
+ * only ask for cancellation once per block of rows or iteration, never per row.
+ *
+ * Cancellation may be asked from any of the worker threads.
+ *
+ * @author Unai & Vicent Perez
+ */
+public interface Progress {
+
+	boolean isCanceled();
+
+	/**
+	 * @param fraction how much of the run is done, between 0 and 1
+	 */
+	void report(double fraction, String message);
+
+	/**
+	 * Receives a message about the course of the run, meant for a debug log.
+	 * Ignored by default.
+	 */
+	default void log(String message) {}
+
+	/**
+	 * @throws CancellationException if the run has been cancelled
+	 */
+	default void checkCanceled() {
+		if (this.isCanceled()) throw new CancellationException("The clustering run was cancelled");
+	}
+
+	/**
+	 * @return a progress that forwards cancellation only, neither reports nor log
+	 * messages, for runs nested in a larger one
+	 */
+	default Progress silent() {
+		Progress parent = this;
+		return new Progress() {
+			@Override
+			public boolean isCanceled() {
+				return parent.isCanceled();
+			}
+
+			@Override
+			public void report(double fraction, String message) {}
+		};
+	}
+
+}
@@ -0,0 +1,141 @@
+package cat.perez.kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Sufficient statistics of a clustering: the amount of rows, the coordinate sums
+ * and the sum of squared norms of every cluster. Means and scatter, and with them
+ * the BIC of {@link cat.perez.xmeans.XMeans}, follow without touching the rows.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterStatistics {
+
+	private final int K;
+	private final int D;
+	private final long [] counts;
+	private final double [][] sums;
+	private final double [] squares;
+
+	public ClusterStatistics(int K, int D) {
+		this.K = K;
+		this.D = D;
+		this.counts = new long [K];
+		this.sums = new double [K][D];
+		this.squares = new double [K];
+	}
+
+	public void add(int k, double [] values, int offset) {
+		double [] sum = sums[k];
+		double square = 0;
+		for (int j = 0; j < D; j++) {
+			double value = values[offset + j];
+			sum[j] += value;
+			square += value * value;
+		}
+		squares[k] += square;
+		counts[k]++;
+	}
+
+	/**
+	 * Adds a single precision row, summed in double precision.
+	 */
+	public void add(int k, float [] values, int offset) {
+		double [] sum = sums[k];
+		double square = 0;
+		for (int j = 0; j < D; j++) {
+			double value = values[offset + j];
+			sum[j] += value;
+			square += value * value;
+		}
+		squares[k] += square;
+		counts[k]++;
+	}
+
+	/**
+	 * Adds a whole group of rows at once from its own statistics.
+	 */
+	public void add(int k, long count, double [] values, int offset, double square) {
+		double [] sum = sums[k];
+		for (int j = 0; j < D; j++) sum[j] += values[offset + j];
+		squares[k] += square;
+		counts[k] += count;
+	}
+
+	/**
+	 * Adds every cluster of other statistics to the same cluster of these.
+	 */
+	public void add(ClusterStatistics other) {
+		for (int k = 0; k < K; k++) add(k, other.counts[k], other.sums[k], 0, other.squares[k]);
+	}
+
+	/**
+	 * Copies cluster <code>from</code> of other statistics into cluster <code>to</code> of these.
+	 */
+	public void set(int to, ClusterStatistics other, int from) {
+		counts[to] = other.counts[from];
+		System.arraycopy(other.sums[from], 0, sums[to], 0, D);
+		squares[to] = other.squares[from];
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		for (double [] sum : sums) Arrays.fill(sum, 0);
+		Arrays.fill(squares, 0);
+	}
+
+	public int size() {
+		return this.K;
+	}
+
+	public int getDimensions() {
+		return this.D;
+	}
+
+	public long getCount(int k) {
+		return this.counts[k];
+	}
+
+	public long getTotalCount() {
+		long total = 0;
+		for (long count : counts) total += count;
+		return total;
+	}
+
+	/**
+	 * Writes the mean of cluster <code>k</code> into <code>mean</code>, if the cluster is not empty.
+	 */
+	public boolean getMean(int k, double [] mean) {
+		if (counts[k] == 0) return false;
+		for (int j = 0; j < D; j++) mean[j] = sums[k][j] / counts[k];
+		return true;
+	}
+
+	/**
+	 * @return the sum of squared distances of all the rows to their overall mean
+	 */
+	public double getTotalScatter() {
+		long count = getTotalCount();
+		if (count == 0) return 0;
+		double square = 0;
+		for (int k = 0; k < K; k++) square += squares[k];
+		double norm = 0;
+		for (int j = 0; j < D; j++) {
+			double sum = 0;
+			for (int k = 0; k < K; k++) sum += sums[k][j];
+			norm += sum * sum;
+		}
+		return Math.max(0, square - norm / count);
+	}
+
+	/**
+	 * @return the sum of squared distances of the rows of cluster <code>k</code> to their mean
+	 */
+	public double getScatter(int k) {
+		if (counts[k] == 0) return 0;
+		double norm = 0;
+		for (int j = 0; j < D; j++) norm += sums[k][j] * sums[k][j];
+		return Math.max(0, squares[k] - norm / counts[k]);
+	}
+
+}
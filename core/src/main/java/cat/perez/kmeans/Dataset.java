@@ -0,0 +1,191 @@
+package cat.perez.kmeans;
+
+import java.util.Arrays;
+
+/**
+ * Dense, primitive storage for the observations handled by {@link KMeans} and
+ * {@link cat.perez.xmeans.XMeans}.
+ *
+ * Values are kept row-major in a single contiguous <code>double</code> array of
+ * N x D and cluster assignments in an <code>int</code> array of N, so no per-row
+ * objects are ever created. Rows are only known by their position, which is the
+ * one they had in the input table; the row keys stay with the table.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class Dataset {
+
+	private double [] values;
+	private final int [] assignments;
+	private final int N;
+	private final int D;
+
+	private Membership membership;
+	private float [] floats;
+	private boolean normalized = false;
+
+	public Dataset(double [] values, int D) {
+		if (D <= 0 || values.length % D != 0) {
+			throw new IllegalArgumentException("Expected rows of " + D + " values but got " + values.length);
+		}
+		this.values = values;
+		this.N = values.length / D;
+		this.D = D;
+		this.assignments = new int [N];
+		Arrays.fill(this.assignments, -1);
+	}
+
+	/**
+	 * @return the length of a row-major array of <code>N</code> rows of <code>D</code> values
+	 * @throws IllegalArgumentException if it does not fit in a single array
+	 */
+	public static int length(long N, int D) {
+		try {
+			return Math.toIntExact(Math.multiplyExact(N, D));
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException(N + " rows of " + D + " values do not fit in a single array", e);
+		}
+	}
+
+	public int size() {
+		return this.N;
+	}
+
+	public int getDimensions() {
+		return this.D;
+	}
+
+	/**
+	 * @return the backing row-major array, row <code>i</code> starting at <code>i * D</code>
+	 */
+	public double [] getValues() {
+		return this.values;
+	}
+
+	/**
+	 * A single precision cache of {@link #getValues()}, made on first use and kept
+	 * next to them for the life of the dataset. It is not a replacement for the
+	 * doubles: it adds 4 bytes per value to their 8, so the dataset takes 50% more
+	 * memory once it exists, see {@link #getBytes()}.
+	 *
+	 * @return the cached single precision copy of the values
+	 */
+	public float [] getFloatCache() {
+		if (this.floats == null) {
+			float [] floats = new float [values.length];
+			for (int i = 0; i < values.length; i++) floats[i] = (float) values[i];
+			this.floats = floats;
+		}
+		return this.floats;
+	}
+
+	/**
+	 * Scales every row to unit length the first time it is called; rows of zeros
+	 * are left as they are. The scaled rows go into a private copy that replaces
+	 * the values, so the array the dataset was built from is never changed, and
+	 * copies made before stay as they were. Copies and subsets of a normalized
+	 * dataset are normalized too.
+	 */
+	public void normalize() {
+		if (this.normalized) return;
+		double [] normalized = Arrays.copyOf(this.values, this.values.length);
+		Distance.COSINE.prepare(normalized, N, D);
+		this.values = normalized;
+		this.floats = null;
+		this.normalized = true;
+	}
+
+	public double get(int row, int column) {
+		return this.values[row * D + column];
+	}
+
+	public double [] getRow(int row) {
+		return Arrays.copyOfRange(this.values, row * D, (row + 1) * D);
+	}
+
+	public int [] getAssignments() {
+		return this.assignments;
+	}
+
+	public int getAssignment(int row) {
+		return this.assignments[row];
+	}
+
+	public void setAssignment(int row, int k) {
+		this.assignments[row] = k;
+		if (this.membership != null) this.membership.move(row, k);
+	}
+
+	public void assignAll(int k) {
+		Arrays.fill(this.assignments, k);
+		if (this.membership == null) return;
+		if (k < 0) this.membership.clear();
+		else this.membership = null;
+	}
+
+	/**
+	 * Brings the membership index up to date with rows whose assignment was written
+	 * straight into {@link #getAssignments()}.
+	 *
+	 * @param rows the changed rows, in its first <code>count</code> positions
+	 */
+	public void updateMembership(int [] rows, int count) {
+		if (this.membership == null) return;
+		for (int i = 0; i < count; i++) this.membership.move(rows[i], this.assignments[rows[i]]);
+	}
+
+	/**
+	 * @return the rows of every cluster, indexed on first use and kept up to date afterwards
+	 */
+	public Membership getMembership() {
+		if (this.membership == null) this.membership = new Membership(this.assignments);
+		return this.membership;
+	}
+
+	/**
+	 * Copies the given rows, assignments included, into a new dataset. Row
+	 * <code>i</code> of the subset is row <code>rows[i]</code> of this one.
+	 */
+	public Dataset subset(int [] rows) {
+		double [] subValues = new double [rows.length * D];
+		for (int i = 0; i < rows.length; i++) System.arraycopy(this.values, rows[i] * D, subValues, i * D, D);
+		Dataset subset = new Dataset(subValues, D);
+		subset.normalized = this.normalized;
+		for (int i = 0; i < rows.length; i++) subset.assignments[i] = this.assignments[rows[i]];
+		return subset;
+	}
+
+	/**
+	 * @return the positions of all rows currently assigned to cluster <code>k</code>, in ascending order
+	 */
+	public int [] rowsOf(int k) {
+		return this.getMembership().getRows(k);
+	}
+
+	/**
+	 * @return the bytes held by the values, their single precision cache, the assignments and the membership index
+	 */
+	public long getBytes() {
+		long bytes = 8L * values.length + 4L * assignments.length;
+		if (this.floats != null) bytes += 4L * floats.length;
+		if (this.membership != null) bytes += this.membership.getBytes();
+		return bytes;
+	}
+
+	/**
+	 * @return a dataset with copied assignments that shares the values, which are
+	 * never written to, see {@link #normalize()}
+	 */
+	public Dataset copy() {
+		Dataset copy = new Dataset(this.values, D);
+		copy.normalized = this.normalized;
+		System.arraycopy(this.assignments, 0, copy.assignments, 0, N);
+		return copy;
+	}
+
+	@Override
+	public String toString() {
+		return "N=" + N + ",D=" + D;
+	}
+
+}
@@ -0,0 +1,155 @@
+package cat.perez.kmeans;
+
+/**
+ * The dissimilarities {@link KMeans} can assign rows by. Every metric compares a
+ * row against all the centroids in a single call, with a loop of its own over
+ * the {@link DistanceKernel}, so that choosing one costs a virtual call per row
+ * and not one per centroid or coordinate.
+ *
+ * Only the assignment depends on the metric: centroids are always the mean of
+ * their rows.
+ *
+ * @author Unai & Vicent Perez
+ */
+public enum Distance {
+
+	/** Squared Euclidean distance, the one K-Means minimizes. The only metric the
+	 *  Elkan and Hamerly bounds and the kd-tree can prune with. */
+	EUCLIDEAN {
+		@Override
+		public double distance(double [] values, int offset, double [] centroids, int centroidOffset, int D, DistanceKernel kernel) {
+			return kernel.squaredDistance(values, offset, centroids, centroidOffset, D);
+		}
+
+		@Override
+		public int nearest(double [] values, int offset, double [] centroids, int K, int D, DistanceKernel kernel) {
+			return kernel.nearest(values, offset, centroids, K, D);
+		}
+
+		@Override
+		public int nearest(float [] values, int offset, float [] centroids, int K, int D, DistanceKernel kernel) {
+			return kernel.nearest(values, offset, centroids, K, D);
+		}
+	},
+
+	/** Sum of the absolute coordinate differences, less swayed by a few far off coordinates. */
+	MANHATTAN {
+		@Override
+		public double distance(double [] values, int offset, double [] centroids, int centroidOffset, int D, DistanceKernel kernel) {
+			return kernel.manhattanDistance(values, offset, centroids, centroidOffset, D);
+		}
+
+		@Override
+		public int nearest(double [] values, int offset, double [] centroids, int K, int D, DistanceKernel kernel) {
+			int k = -1;
+			double min = Double.POSITIVE_INFINITY;
+			for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+				double distance = kernel.manhattanDistance(values, offset, centroids, centroidOffset, D);
+				if (distance < min) {
+					min = distance;
+					k = c;
+				}
+			}
+			return k;
+		}
+
+		@Override
+		public int nearest(float [] values, int offset, float [] centroids, int K, int D, DistanceKernel kernel) {
+			int k = -1;
+			float min = Float.POSITIVE_INFINITY;
+			for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+				float distance = kernel.manhattanDistance(values, offset, centroids, centroidOffset, D);
+				if (distance < min) {
+					min = distance;
+					k = c;
+				}
+			}
+			return k;
+		}
+	},
+
+	/** One minus the cosine similarity, for rows of which only the direction matters.
+	 *  The dataset scales its rows to unit length once, into a copy of its own (see
+	 *  {@link Dataset#normalize()}), and the centroids are scaled before every
+	 *  assignment, so that comparing them takes a single dot product. */
+	COSINE {
+		@Override
+		public void prepare(Dataset dataset) {
+			dataset.normalize();
+		}
+
+		@Override
+		public void prepare(double [] values, int N, int D) {
+			for (int i = 0, offset = 0; i < N; i++, offset += D) {
+				double norm = 0;
+				for (int j = 0; j < D; j++) norm += values[offset + j] * values[offset + j];
+				if (norm == 0) continue;
+				norm = Math.sqrt(norm);
+				for (int j = 0; j < D; j++) values[offset + j] /= norm;
+			}
+		}
+
+		@Override
+		public double distance(double [] values, int offset, double [] centroids, int centroidOffset, int D, DistanceKernel kernel) {
+			return Math.max(0, 1 - kernel.dot(values, offset, centroids, centroidOffset, D));
+		}
+
+		@Override
+		public int nearest(double [] values, int offset, double [] centroids, int K, int D, DistanceKernel kernel) {
+			int k = -1;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+				double similarity = kernel.dot(values, offset, centroids, centroidOffset, D);
+				if (similarity > max) {
+					max = similarity;
+					k = c;
+				}
+			}
+			return k;
+		}
+
+		@Override
+		public int nearest(float [] values, int offset, float [] centroids, int K, int D, DistanceKernel kernel) {
+			int k = -1;
+			float max = Float.NEGATIVE_INFINITY;
+			for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+				float similarity = kernel.dot(values, offset, centroids, centroidOffset, D);
+				if (similarity > max) {
+					max = similarity;
+					k = c;
+				}
+			}
+			return k;
+		}
+	};
+
+	/**
+	 * Brings the rows of a dataset into the form the metric compares, once; nothing
+	 * but for {@link #COSINE}, which leaves the array the dataset was built from as
+	 * it was, see {@link Dataset#normalize()}.
+	 */
+	public void prepare(Dataset dataset) {}
+
+	/**
+	 * Brings <code>N</code> rows of a row-major array into the form the metric
+	 * compares, in place; centroids have to go through it before every assignment.
+	 */
+	public void prepare(double [] values, int N, int D) {}
+
+	/**
+	 * @return the dissimilarity between a prepared row and a prepared centroid, never negative
+	 */
+	public abstract double distance(double [] values, int offset, double [] centroids, int centroidOffset, int D, DistanceKernel kernel);
+
+	/**
+	 * @return the index of the prepared centroid closest to the prepared row of <code>D</code>
+	 * values starting at <code>offset</code>, the lowest one on ties
+	 */
+	public abstract int nearest(double [] values, int offset, double [] centroids, int K, int D, DistanceKernel kernel);
+
+	/**
+	 * @see #nearest(double[], int, double[], int, int, DistanceKernel)
+	 */
+	public abstract int nearest(float [] values, int offset, float [] centroids, int K, int D, DistanceKernel kernel);
+
+}
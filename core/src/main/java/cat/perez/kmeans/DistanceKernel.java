@@ -0,0 +1,135 @@
+package cat.perez.kmeans;
+
+/**
+ * The squared distance and nearest centroid loops every assignment spends its
+ * time in, along with the Manhattan distance and dot product the other
+ * {@link Distance} metrics are built on. Centroids are given as a single
+ * row-major array of K x D values, so that a kernel can stream through them.
+ *
+ * The default kernel is the SIMD one of the <code>xmeans-vector</code> module
+ * when it is on the class path and the JVM runs with
+ * <code>--add-modules jdk.incubator.vector</code>, and {@link #SCALAR} otherwise.
+ * Both give the same assignments up to ties that differ in the last bits, as
+ * they add up the coordinates in a different order.
+ *
+ * The KNIME plugin only compiles <code>src/</code> and the core, for Java 8, so
+ * the nodes always run with {@link #SCALAR}; the SIMD kernel is for headless runs.
+ *
+ * @author Unai & Vicent Perez
+ */
+public abstract class DistanceKernel {
+
+	private static final String VECTOR_KERNEL = "cat.perez.kmeans.VectorKernel";
+
+	/** Plain loops, adding up the coordinates in order. */
+	public static final DistanceKernel SCALAR = new DistanceKernel() {
+
+		@Override
+		public double squaredDistance(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+			double sum = 0;
+			for (int j = 0; j < D; j++) {
+				double diff = values[offset + j] - centroids[centroidOffset + j];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+
+		@Override
+		public float squaredDistance(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+			float sum = 0;
+			for (int j = 0; j < D; j++) {
+				float diff = values[offset + j] - centroids[centroidOffset + j];
+				sum += diff * diff;
+			}
+			return sum;
+		}
+
+		@Override
+		public String toString() {
+			return "SCALAR";
+		}
+
+	};
+
+	private static final DistanceKernel DEFAULT = load();
+
+	protected DistanceKernel() {}
+
+	private static DistanceKernel load() {
+		try {
+			return (DistanceKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// Not on the class path, or the incubator module was not added to the JVM
+			return SCALAR;
+		}
+	}
+
+	/**
+	 * @return the vectorized kernel if it can be loaded, {@link #SCALAR} otherwise
+	 */
+	public static DistanceKernel getDefault() {
+		return DEFAULT;
+	}
+
+	public abstract double squaredDistance(double [] values, int offset, double [] centroids, int centroidOffset, int D);
+
+	public abstract float squaredDistance(float [] values, int offset, float [] centroids, int centroidOffset, int D);
+
+	public double manhattanDistance(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+		double sum = 0;
+		for (int j = 0; j < D; j++) sum += Math.abs(values[offset + j] - centroids[centroidOffset + j]);
+		return sum;
+	}
+
+	public float manhattanDistance(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		float sum = 0;
+		for (int j = 0; j < D; j++) sum += Math.abs(values[offset + j] - centroids[centroidOffset + j]);
+		return sum;
+	}
+
+	public double dot(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+		double sum = 0;
+		for (int j = 0; j < D; j++) sum += values[offset + j] * centroids[centroidOffset + j];
+		return sum;
+	}
+
+	public float dot(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		float sum = 0;
+		for (int j = 0; j < D; j++) sum += values[offset + j] * centroids[centroidOffset + j];
+		return sum;
+	}
+
+	/**
+	 * @return the index of the centroid closest to the row of <code>D</code> values
+	 * starting at <code>offset</code>, the lowest one on ties
+	 */
+	public int nearest(double [] values, int offset, double [] centroids, int K, int D) {
+		int k = -1;
+		double min = Double.POSITIVE_INFINITY;
+		for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+			double distance = squaredDistance(values, offset, centroids, centroidOffset, D);
+			if (distance < min) {
+				min = distance;
+				k = c;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * @see #nearest(double[], int, double[], int, int)
+	 */
+	public int nearest(float [] values, int offset, float [] centroids, int K, int D) {
+		int k = -1;
+		float min = Float.POSITIVE_INFINITY;
+		for (int c = 0, centroidOffset = 0; c < K; c++, centroidOffset += D) {
+			float distance = squaredDistance(values, offset, centroids, centroidOffset, D);
+			if (distance < min) {
+				min = distance;
+				k = c;
+			}
+		}
+		return k;
+	}
+
+}
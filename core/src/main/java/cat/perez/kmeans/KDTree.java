@@ -0,0 +1,344 @@
+package cat.perez.kmeans;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A kd-tree over the rows of a {@link Dataset} whose nodes cache their bounding
+ * box and sufficient statistics, after Pelleg & Moore's mrkd-trees. A pass over the
+ * tree prunes ("blacklists") the centroids that cannot own any row of a node, and a
+ * node left with a single candidate is assigned as a whole from its statistics.
+ *
+ * Every node also remembers the cluster owning all of its rows, if any, so passes
+ * can be restricted to the rows of one cluster without looking at the others.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class KDTree {
+
+	private static final int LEAF_SIZE = 32;
+
+	private final Dataset dataset;
+	private final int D;
+	private final int [] index;
+
+	private int nodes = 0;
+	private int depth = 0;
+	private final int [] from;
+	private final int [] to;
+	private final int [] left;
+	private final int [] right;
+	private final int [] owners;
+	private final double [] sums;
+	private final double [] squares;
+	private final double [] lowers;
+	private final double [] uppers;
+
+	private Pass writer;
+	private final LongAdder distances = new LongAdder();
+
+	public KDTree(Dataset dataset) {
+		int N = dataset.size();
+		this.dataset = dataset;
+		this.D = dataset.getDimensions();
+		this.index = new int [N];
+		for (int i = 0; i < N; i++) index[i] = i;
+		int capacity = 2 * (N / (LEAF_SIZE / 2) + 1);
+		this.from = new int [capacity];
+		this.to = new int [capacity];
+		this.left = new int [capacity];
+		this.right = new int [capacity];
+		this.owners = new int [capacity];
+		this.sums = new double [capacity * D];
+		this.squares = new double [capacity];
+		this.lowers = new double [capacity * D];
+		this.uppers = new double [capacity * D];
+		Arrays.fill(owners, -1);
+		build(0, N, 0);
+	}
+
+	public Dataset getDataset() {
+		return this.dataset;
+	}
+
+	/**
+	 * Forgets which cluster owns each node, to be called whenever the assignments
+	 * of the dataset are changed outside of the tree.
+	 */
+	public void invalidate() {
+		Arrays.fill(owners, -1);
+	}
+
+	/**
+	 * Assigns the rows of cluster <code>parent</code>, or every row if it is negative,
+	 * to their closest centroid. A row closest to centroid <code>c</code> gets cluster
+	 * <code>labels[c]</code> and is added to <code>statistics</code> as cluster <code>c</code>.
+	 *
+	 * @return how many rows changed cluster
+	 */
+	public int assign(double [][] centroids, int [] labels, int parent, ClusterStatistics statistics) {
+		// Write passes are never concurrent, so their scratch space is reused
+		if (writer == null || writer.candidates[0].length < centroids.length) writer = new Pass(centroids.length);
+		Pass pass = writer.start(centroids, labels, parent, statistics);
+		visit(0, -1, pass.candidates[0], centroids.length, 0, pass);
+		distances.add(pass.distances);
+		return pass.moved;
+	}
+
+	/**
+	 * Like {@link #assign(double[][], int[], int, ClusterStatistics)} but only gathers
+	 * the statistics, leaving the dataset and the tree untouched. Safe to call from
+	 * several threads at once.
+	 *
+	 * @return how many row to centroid distances were computed
+	 */
+	public long fit(double [][] centroids, int parent, ClusterStatistics statistics) {
+		Pass pass = new Pass(centroids.length).start(centroids, null, parent, statistics);
+		visit(0, -1, pass.candidates[0], centroids.length, 0, pass);
+		distances.add(pass.distances);
+		return pass.distances;
+	}
+
+	/**
+	 * @return how many row to centroid distances all the passes so far have computed
+	 */
+	public long getDistances() {
+		return distances.sum();
+	}
+
+	/**
+	 * @return the bytes held by the node arrays
+	 */
+	public long getBytes() {
+		return 4L * (index.length + 5L * from.length) + 8L * (sums.length + squares.length + lowers.length + uppers.length);
+	}
+
+	private int build(int start, int end, int level) {
+		int node = nodes++;
+		int base = node * D;
+		double [] values = dataset.getValues();
+		from[node] = start;
+		to[node] = end;
+		left[node] = -1;
+		right[node] = -1;
+		depth = Math.max(depth, level);
+		Arrays.fill(lowers, base, base + D, Double.POSITIVE_INFINITY);
+		Arrays.fill(uppers, base, base + D, Double.NEGATIVE_INFINITY);
+		for (int p = start; p < end; p++) {
+			int offset = index[p] * D;
+			for (int j = 0; j < D; j++) {
+				double value = values[offset + j];
+				if (value < lowers[base + j]) lowers[base + j] = value;
+				if (value > uppers[base + j]) uppers[base + j] = value;
+			}
+		}
+		int widest = 0;
+		for (int j = 1; j < D; j++) {
+			if (uppers[base + j] - lowers[base + j] > uppers[base + widest] - lowers[base + widest]) widest = j;
+		}
+		if (end - start > LEAF_SIZE && uppers[base + widest] > lowers[base + widest]) {
+			int middle = (start + end) >>> 1;
+			select(start, end, middle, widest);
+			int l = build(start, middle, level + 1);
+			int r = build(middle, end, level + 1);
+			left[node] = l;
+			right[node] = r;
+			for (int j = 0; j < D; j++) sums[base + j] = sums[l * D + j] + sums[r * D + j];
+			squares[node] = squares[l] + squares[r];
+		} else {
+			for (int p = start; p < end; p++) {
+				int offset = index[p] * D;
+				for (int j = 0; j < D; j++) {
+					double value = values[offset + j];
+					sums[base + j] += value;
+					squares[node] += value * value;
+				}
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Partially sorts the index range so that position <code>k</code> holds its median along <code>dimension</code>.
+	 */
+	private void select(int start, int end, int k, int dimension) {
+		double [] values = dataset.getValues();
+		int lo = start;
+		int hi = end - 1;
+		while (lo < hi) {
+			double pivot = values[index[(lo + hi) >>> 1] * D + dimension];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (values[index[i] * D + dimension] < pivot) i++;
+				while (values[index[j] * D + dimension] > pivot) j--;
+				if (i <= j) {
+					int swap = index[i];
+					index[i++] = index[j];
+					index[j--] = swap;
+				}
+			}
+			if (k <= j) hi = j;
+			else if (k >= i) lo = i;
+			else break;
+		}
+	}
+
+	/**
+	 * @return the owner of every row of the node after the pass, or -1 if they differ
+	 */
+	private int visit(int node, int inherited, int [] candidates, int count, int level, Pass pass) {
+		int owner = inherited >= 0 ? inherited : owners[node];
+		if (pass.parent >= 0 && owner >= 0 && owner != pass.parent) {
+			if (pass.labels != null) owners[node] = owner;
+			return owner;
+		}
+		if (count > 1) {
+			int [] kept = pass.candidates[level + 1];
+			count = filter(node, candidates, count, kept, pass.centroids);
+			candidates = kept;
+		}
+		if (count == 1 && (pass.parent < 0 || owner == pass.parent)) {
+			// The whole node goes to a single centroid
+			int c = candidates[0];
+			pass.statistics.add(c, to[node] - from[node], sums, node * D, squares[node]);
+			if (pass.labels == null) return owner;
+			int label = pass.labels[c];
+			if (owner != label) {
+				int [] assignments = dataset.getAssignments();
+				for (int p = from[node]; p < to[node]; p++) {
+					if (assignments[index[p]] != label) {
+						dataset.setAssignment(index[p], label);
+						pass.moved++;
+					}
+				}
+			}
+			owners[node] = label;
+			return label;
+		}
+		if (left[node] < 0) {
+			int result = leaf(node, owner, candidates, count, pass);
+			if (pass.labels == null) return owner;
+			owners[node] = result;
+			return result;
+		}
+		int l = visit(left[node], owner, candidates, count, level + 1, pass);
+		int r = visit(right[node], owner, candidates, count, level + 1, pass);
+		if (pass.labels == null) return owner;
+		int result = l == r ? l : -1;
+		owners[node] = result;
+		return result;
+	}
+
+	private int leaf(int node, int owner, int [] candidates, int count, Pass pass) {
+		double [] values = dataset.getValues();
+		int [] assignments = dataset.getAssignments();
+		int result = -2;
+		for (int p = from[node]; p < to[node]; p++) {
+			int row = index[p];
+			int label;
+			if (pass.parent >= 0 && owner < 0 && assignments[row] != pass.parent) {
+				label = assignments[row];
+			} else {
+				int offset = row * D;
+				pass.distances += count;
+				int k = candidates[0];
+				double min = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < count; i++) {
+					double [] centroid = pass.centroids[candidates[i]];
+					double distance = 0;
+					for (int j = 0; j < D; j++) {
+						double diff = values[offset + j] - centroid[j];
+						distance += diff * diff;
+					}
+					if (distance < min) {
+						min = distance;
+						k = candidates[i];
+					}
+				}
+				pass.statistics.add(k, values, offset);
+				if (pass.labels == null) continue;
+				label = pass.labels[k];
+				if (assignments[row] != label) {
+					dataset.setAssignment(row, label);
+					pass.moved++;
+				}
+			}
+			result = result == -2 || result == label ? label : -1;
+		}
+		return result == -2 ? -1 : result;
+	}
+
+	/**
+	 * Keeps, in order, the candidates that may be the closest to some point of the
+	 * node's box: the one closest to the box midpoint and any other that is not
+	 * farther than it even at the box corner most favourable to it.
+	 */
+	private int filter(int node, int [] candidates, int count, int [] kept, double [][] centroids) {
+		int base = node * D;
+		int best = candidates[0];
+		double bestDistance = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			double [] centroid = centroids[candidates[i]];
+			double distance = 0;
+			for (int j = 0; j < D; j++) {
+				double diff = centroid[j] - (lowers[base + j] + uppers[base + j]) / 2;
+				distance += diff * diff;
+			}
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = candidates[i];
+			}
+		}
+		double [] closest = centroids[best];
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			int c = candidates[i];
+			if (c != best) {
+				double [] centroid = centroids[c];
+				double candidateDistance = 0;
+				double closestDistance = 0;
+				for (int j = 0; j < D; j++) {
+					double corner = centroid[j] > closest[j] ? uppers[base + j] : lowers[base + j];
+					candidateDistance += (centroid[j] - corner) * (centroid[j] - corner);
+					closestDistance += (closest[j] - corner) * (closest[j] - corner);
+				}
+				if (candidateDistance > closestDistance) continue;
+			}
+			kept[n++] = c;
+		}
+		return n;
+	}
+
+	/**
+	 * The state of one pass over the tree, so that read only passes can run concurrently.
+	 * Its scratch space may be reused by a later pass.
+	 */
+	private final class Pass {
+
+		private final int [][] candidates;
+		private double [][] centroids;
+		private int [] labels;
+		private int parent;
+		private ClusterStatistics statistics;
+		private int moved;
+		private long distances;
+
+		private Pass(int K) {
+			this.candidates = new int [depth + 2][K];
+		}
+
+		private Pass start(double [][] centroids, int [] labels, int parent, ClusterStatistics statistics) {
+			this.centroids = centroids;
+			this.labels = labels;
+			this.parent = parent;
+			this.statistics = statistics;
+			this.moved = 0;
+			this.distances = 0;
+			for (int c = 0; c < centroids.length; c++) this.candidates[0][c] = c;
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,667 @@
+package cat.perez.kmeans;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cat.perez.Metrics;
+import cat.perez.Progress;
+
+public class KMeans {
+
+	/** Rows are always split into the same chunks, whatever the thread count, so that
+	 *  partial sums are added in the same order and results do not depend on it. */
+	private static final int MAX_CHUNKS = 64;
+	private static final int MIN_CHUNK_SIZE = 2048;
+
+	/** Relative slack given to the triangle inequality bounds, so that rounding in the
+	 *  computed distances can never prune a centroid that Lloyd would have picked. */
+	private static final double BOUND_EPSILON = 1e-10;
+
+	/** Above this many dimensions Hamerly's single lower bound gets loose and Elkan pays off. */
+	private static final int HAMERLY_MAX_DIMENSIONS = 50;
+	private static final int ELKAN_MIN_K = 20;
+	/** Largest N x K lower bound matrix (in doubles, 512MB) that AUTO lets Elkan allocate. */
+	private static final long ELKAN_MAX_BOUNDS = 1L << 26;
+
+	public enum Algorithm {
+		/** Picks one of the others from N, D and K. */
+		AUTO,
+		/** Computes every point to centroid distance on every iteration. */
+		LLOYD,
+		/** Keeps an upper bound and K lower bounds per point (Elkan, 2003). */
+		ELKAN,
+		/** Keeps one upper and one lower bound per point (Hamerly, 2010). */
+		HAMERLY
+	}
+
+	private Dataset dataset;
+	private int K;
+	private Random random = new Random();
+	private int maxIterations = 100000;
+	private int threads = 1;
+	private Algorithm algorithm = Algorithm.AUTO;
+	private Seeding seeding = Seeding.KMEANS_PLUS_PLUS;
+	private int batchSize = 0;
+	private int batches = 0;
+	private double shiftTolerance = 0;
+	private double inertiaTolerance = 0;
+	private Metrics metrics;
+	private Progress progress;
+	private Algorithm engine;
+	private int D;
+
+
+	private double [][] centroids;
+	private DistanceKernel kernel = DistanceKernel.getDefault();
+	private Distance distance = Distance.EUCLIDEAN;
+	private boolean float32 = false;
+	// The centroids laid out for the kernel, refreshed before every assignment
+	private double [] flatCentroids;
+	private float [] floatCentroids;
+	private Chunk [] chunks;
+	private KDTree tree;
+	private ClusterStatistics statistics;
+	private double [][] previous;
+	private double variance;
+	private double inertia;
+	private double done;
+
+	// Elkan and Hamerly state
+	private double [] upper;
+	private double [] lower;
+	private double [] shifts;
+	private double [][] halfDistances;
+	private double [] separations;
+	private int farthestShift;
+	private double maxShift;
+	private double secondMaxShift;
+
+	public KMeans(Dataset dataset, int K, int maxIterations) {
+		this.dataset = dataset;
+		this.K = K;
+		this.maxIterations = maxIterations;
+		this.D = dataset.getDimensions();
+	}
+
+	public void run() {
+		boolean convergence = false;
+		int iteration = 0;
+		initialize();
+		if (this.metrics != null) this.metrics.round(this.K);
+		long start = System.nanoTime();
+		ExecutorService executor = this.threads > 1 && this.chunks.length > 1 ? Executors.newFixedThreadPool(Math.min(this.threads, this.chunks.length)) : null;
+		try {
+			if (this.tree != null && !this.isMiniBatch()) {
+				this.runTree();
+				return;
+			}
+			if (this.isMiniBatch()) {
+				this.miniBatch();
+				// One full pass to label every row with its closest mini-batch centroid
+				this.assign(executor);
+				this.gather();
+				return;
+			}
+			do {
+				int moved = this.assign(executor);
+				convergence = moved == 0;
+				this.recalculate();
+				convergence |= this.withinTolerances();
+				this.report(iteration, moved);
+			} while (!convergence && ++iteration < this.maxIterations);
+		} finally {
+			if (executor != null) executor.shutdownNow();
+			if (this.metrics != null) this.metrics.time(Metrics.CLUSTERING, System.nanoTime() - start);
+		}
+	}
+
+	private void initialize() {
+		if (this.progress != null) this.progress.checkCanceled();
+		this.distance.prepare(dataset);
+		// Bounds and the kd-tree only hold for the Euclidean distance
+		if (this.distance != Distance.EUCLIDEAN) this.tree = null;
+		if (this.centroids == null || this.centroids.length == 0) {
+			long start = System.nanoTime();
+			this.centroids = seeding.seed(dataset, this.K, random, this.threads, this.distance, this.progress);
+			if (this.metrics != null) this.metrics.time(Metrics.SEEDING, System.nanoTime() - start);
+			if (this.progress != null) this.progress.log("K-Means centroids are initialized (k=" + this.K + ")");
+		}
+		dataset.assignAll(-1);
+		if (this.tree != null) this.tree.invalidate();
+		this.statistics = new ClusterStatistics(K, D);
+		this.variance = Double.NaN;
+		this.inertia = Double.NaN;
+		this.done = 0;
+		int N = dataset.size();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (N + MAX_CHUNKS - 1) / MAX_CHUNKS);
+		this.chunks = new Chunk [Math.max(1, (N + chunkSize - 1) / chunkSize)];
+		for (int c = 0; c < chunks.length; c++) chunks[c] = new Chunk(c * chunkSize, Math.min(N, (c + 1) * chunkSize));
+		this.engine = this.isMiniBatch() || this.tree != null || this.float32 || this.distance != Distance.EUCLIDEAN ? Algorithm.LLOYD : this.algorithm == Algorithm.AUTO ? select(N, D, K) : this.algorithm;
+		this.previous = this.engine != Algorithm.LLOYD || this.shiftTolerance > 0 ? new double [K][D] : null;
+		this.flatCentroids = new double [K * D];
+		this.floatCentroids = this.float32 ? new float [K * D] : null;
+		// Made here, before the chunks run, so that no thread sees it half written
+		if (this.float32) dataset.getFloatCache();
+		if (this.engine != Algorithm.LLOYD) {
+			this.upper = new double [N];
+			this.lower = new double [this.engine == Algorithm.ELKAN ? Dataset.length(N, K) : N];
+			this.shifts = new double [K];
+			this.halfDistances = this.engine == Algorithm.ELKAN ? new double [K][K] : null;
+			this.separations = new double [K];
+		}
+		if (this.metrics != null) {
+			long bytes = dataset.getBytes() + (this.tree != null ? this.tree.getBytes() : 0);
+			if (this.engine != Algorithm.LLOYD) bytes += 8L * (this.upper.length + this.lower.length);
+			this.metrics.peak(Metrics.PEAK_BYTES, bytes);
+		}
+	}
+
+	/**
+	 * Chooses the engine used by {@link Algorithm#AUTO}: bounds are pointless for a
+	 * single centroid, Hamerly wins on low to mid dimensional data and Elkan on wide
+	 * data with many centroids, as long as its N x K bounds stay affordable.
+	 */
+	static Algorithm select(int N, int D, int K) {
+		if (K <= 1) return Algorithm.LLOYD;
+		if (D > HAMERLY_MAX_DIMENSIONS && K >= ELKAN_MIN_K && (long) N * K <= ELKAN_MAX_BOUNDS) return Algorithm.ELKAN;
+		return Algorithm.HAMERLY;
+	}
+
+	/**
+	 * Lloyd iterations driven by the kd-tree: whole nodes are assigned at once and
+	 * the centroids follow from the statistics gathered on the way.
+	 */
+	private void runTree() {
+		int [] labels = new int [K];
+		for (int c = 0; c < K; c++) labels[c] = c;
+		boolean convergence;
+		int iteration = 0;
+		do {
+			statistics.clear();
+			long distances = tree.getDistances();
+			int moved = tree.assign(centroids, labels, -1, statistics);
+			convergence = moved == 0;
+			if (this.metrics != null) {
+				distances = tree.getDistances() - distances;
+				this.metrics.iteration(moved, distances, (long) dataset.size() * K - distances);
+			}
+			for (int c = 0; c < K; c++) {
+				if (previous != null) System.arraycopy(centroids[c], 0, previous[c], 0, D);
+				statistics.getMean(c, centroids[c]);
+			}
+			convergence |= this.withinTolerances();
+			this.report(iteration, moved);
+		} while (!convergence && ++iteration < this.maxIterations);
+	}
+
+	/**
+	 * Runs end when no row moves, and the rows moved per iteration drop roughly
+	 * geometrically, so the fraction is how far that count has come down from N on
+	 * a log scale. It never goes back, and is only driven by the iteration cap when
+	 * the cap is nearer.
+	 */
+	private void report(int iteration, int moved) {
+		if (this.progress == null) return;
+		this.progress.checkCanceled();
+		double fraction = 1 - Math.log1p(moved) / Math.log1p(dataset.size());
+		this.done = Math.max(this.done, Math.max(fraction, (iteration + 1.0) / this.maxIterations));
+		this.progress.report(this.done, "Iteration " + (iteration + 1) + ", " + moved + " rows moved");
+	}
+
+	/**
+	 * Whether the last update moved the centroids, or lowered the inertia, by less
+	 * than the tolerances. Both follow from the statistics, without reading the rows.
+	 */
+	private boolean withinTolerances() {
+		boolean within = false;
+		if (this.shiftTolerance > 0) {
+			// The mean variance of the columns, which do not change between iterations
+			if (Double.isNaN(variance)) variance = statistics.getTotalScatter() / ((double) statistics.getTotalCount() * D);
+			double shift = 0;
+			for (int c = 0; c < K; c++) shift += squaredDistance(previous[c], 0, centroids[c]);
+			within = shift <= this.shiftTolerance * variance;
+		}
+		if (this.inertiaTolerance > 0) {
+			double current = 0;
+			for (int c = 0; c < K; c++) current += statistics.getScatter(c);
+			within |= !Double.isNaN(inertia) && inertia - current <= this.inertiaTolerance * inertia;
+			inertia = current;
+		}
+		return within;
+	}
+
+	private boolean isMiniBatch() {
+		return this.batchSize > 0 && this.batchSize < dataset.size();
+	}
+
+	/**
+	 * Moves the centroids towards random mini-batches, each centroid with a learning
+	 * rate of one over the amount of rows it has been given so far (Sculley, 2010).
+	 */
+	private void miniBatch() {
+		double [] values = dataset.getValues();
+		int N = dataset.size();
+		long [] seen = new long [K];
+		int [] batch = new int [batchSize];
+		int [] nearest = new int [batchSize];
+		for (int b = 0; b < batches && b < maxIterations; b++) {
+			this.flatten();
+			if (this.progress != null) {
+				this.progress.checkCanceled();
+				this.progress.report((b + 1.0) / Math.min(batches, maxIterations), "Mini-batch " + (b + 1));
+			}
+			for (int i = 0; i < batchSize; i++) {
+				batch[i] = random.nextInt(N);
+				nearest[i] = assignLloyd(values, batch[i] * D);
+			}
+			if (this.metrics != null) this.metrics.count(Metrics.DISTANCES, (long) batchSize * K);
+			for (int i = 0; i < batchSize; i++) {
+				double [] centroid = centroids[nearest[i]];
+				double rate = 1.0 / ++seen[nearest[i]];
+				int offset = batch[i] * D;
+				for (int j = 0; j < D; j++) centroid[j] += rate * (values[offset + j] - centroid[j]);
+			}
+		}
+	}
+
+	/**
+	 * Copies the centroids into the row-major arrays the kernel reads, prepared for the distance.
+	 */
+	private void flatten() {
+		for (int c = 0; c < K; c++) System.arraycopy(centroids[c], 0, flatCentroids, c * D, D);
+		distance.prepare(flatCentroids, K, D);
+		if (floatCentroids != null) {
+			for (int i = 0; i < flatCentroids.length; i++) floatCentroids[i] = (float) flatCentroids[i];
+		}
+	}
+
+	private int assign(ExecutorService executor) {
+		this.flatten();
+		if (executor == null) {
+			for (Chunk chunk : chunks) chunk.call();
+		} else {
+			List<Future<Chunk>> futures;
+			try {
+				futures = executor.invokeAll(Arrays.asList(chunks));
+				for (Future<Chunk> future : futures) future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("K-Means assignment was interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+				throw new IllegalStateException("K-Means assignment failed", e.getCause());
+			}
+		}
+		int moved = 0;
+		long distances = 0;
+		for (Chunk chunk : chunks) {
+			dataset.updateMembership(chunk.moved, chunk.movedCount);
+			moved += chunk.movedCount;
+			distances += chunk.distances;
+		}
+		if (this.metrics != null) this.metrics.iteration(moved, distances, (long) dataset.size() * K - distances);
+		return moved;
+	}
+
+	private int assignLloyd(double [] values, int offset) {
+		return distance.nearest(values, offset, flatCentroids, K, D, kernel);
+	}
+
+	/**
+	 * Squared distance from a row to a centroid through the kernel. Every engine
+	 * computes them this way, so that all of them see the very same distances.
+	 */
+	private double rowDistance(double [] values, int offset, int c) {
+		return kernel.squaredDistance(values, offset, flatCentroids, c * D, D);
+	}
+
+	private int assignElkan(double [] values, int offset, int row, int a, Chunk chunk) {
+		int base = row * K;
+		if (a < 0) {
+			// First pass, every distance is computed and becomes a tight bound
+			chunk.distances += K;
+			int k = -1;
+			double min = Double.POSITIVE_INFINITY;
+			for (int c = 0; c < K; c++) {
+				double squared = rowDistance(values, offset, c);
+				lower[base + c] = Math.sqrt(squared);
+				if (squared < min) {
+					min = squared;
+					k = c;
+				}
+			}
+			upper[row] = Math.sqrt(min);
+			return k;
+		}
+		// Move the bounds along with the centroids
+		double u = upper[row];
+		if (shifts[a] > 0) u = (u + shifts[a]) * (1 + BOUND_EPSILON);
+		for (int c = 0; c < K; c++) {
+			if (shifts[c] > 0) lower[base + c] = Math.max(0, (lower[base + c] - shifts[c]) * (1 - BOUND_EPSILON));
+		}
+		if (u < separations[a]) {
+			upper[row] = u;
+			return a;
+		}
+		boolean tight = false;
+		double squaredU = 0;
+		for (int c = 0; c < K; c++) {
+			if (c == a || u < lower[base + c] || u < halfDistances[a][c]) continue;
+			if (!tight) {
+				squaredU = rowDistance(values, offset, a);
+				chunk.distances++;
+				u = Math.sqrt(squaredU);
+				lower[base + a] = u;
+				tight = true;
+				if (u < lower[base + c] || u < halfDistances[a][c]) continue;
+			}
+			double squared = rowDistance(values, offset, c);
+			chunk.distances++;
+			lower[base + c] = Math.sqrt(squared);
+			// Compared squared, ties going to the lowest index, as in Lloyd
+			if (squared < squaredU || (squared == squaredU && c < a)) {
+				a = c;
+				u = lower[base + c];
+				squaredU = squared;
+			}
+		}
+		upper[row] = u;
+		return a;
+	}
+
+	private int assignHamerly(double [] values, int offset, int row, int a, Chunk chunk) {
+		double u = upper[row];
+		double l = lower[row];
+		if (a >= 0) {
+			// Move the bounds along with the centroids
+			if (shifts[a] > 0) u = (u + shifts[a]) * (1 + BOUND_EPSILON);
+			double shift = a == farthestShift ? secondMaxShift : maxShift;
+			if (shift > 0) l = Math.max(0, (l - shift) * (1 - BOUND_EPSILON));
+			double bound = Math.max(separations[a], l);
+			if (u < bound) {
+				upper[row] = u;
+				lower[row] = l;
+				return a;
+			}
+			u = Math.sqrt(rowDistance(values, offset, a));
+			chunk.distances++;
+			if (u < bound) {
+				upper[row] = u;
+				lower[row] = l;
+				return a;
+			}
+		}
+		// The bounds could not rule out a change, look for the two closest centroids
+		chunk.distances += K;
+		int k = -1;
+		double min = Double.POSITIVE_INFINITY;
+		double second = Double.POSITIVE_INFINITY;
+		for (int c = 0; c < K; c++) {
+			double distance = rowDistance(values, offset, c);
+			if (distance < min) {
+				second = min;
+				min = distance;
+				k = c;
+			} else if (distance < second) {
+				second = distance;
+			}
+		}
+		upper[row] = Math.sqrt(min);
+		lower[row] = Math.sqrt(second);
+		return k;
+	}
+
+	/**
+	 * Combines the statistics of the chunks, in chunk order.
+	 */
+	private void gather() {
+		statistics.clear();
+		for (Chunk chunk : chunks) statistics.add(chunk.statistics);
+	}
+
+	private void recalculate() {
+		// Recalculation
+		this.gather();
+		for (int cluster = 0; cluster < K; cluster++) {
+			double [] coord = centroids[cluster];
+			if (previous != null) System.arraycopy(coord, 0, previous[cluster], 0, D);
+			if (!statistics.getMean(cluster, coord)) {
+				if (this.engine != Algorithm.LLOYD) shifts[cluster] = 0;
+				continue;
+			}
+			if (this.engine != Algorithm.LLOYD) shifts[cluster] = distance(previous[cluster], 0, coord);
+		}
+		if (this.engine != Algorithm.LLOYD) {
+			for (int a = 0; a < K; a++) separations[a] = Double.POSITIVE_INFINITY;
+			for (int a = 0; a < K; a++) {
+				for (int c = a + 1; c < K; c++) {
+					double half = 0.5 * distance(centroids[a], 0, centroids[c]) * (1 - BOUND_EPSILON);
+					if (this.engine == Algorithm.ELKAN) {
+						halfDistances[a][c] = half;
+						halfDistances[c][a] = half;
+					}
+					separations[a] = Math.min(separations[a], half);
+					separations[c] = Math.min(separations[c], half);
+				}
+			}
+			maxShift = 0;
+			secondMaxShift = 0;
+			farthestShift = -1;
+			for (int c = 0; c < K; c++) {
+				if (shifts[c] > maxShift) {
+					secondMaxShift = maxShift;
+					maxShift = shifts[c];
+					farthestShift = c;
+				} else if (shifts[c] > secondMaxShift) {
+					secondMaxShift = shifts[c];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Euclidean distance between centroids, only needed where it has to be compared against the bounds.
+	 */
+	private double distance(double [] values, int offset, double [] centroid) {
+		return Math.sqrt(squaredDistance(values, offset, centroid));
+	}
+
+	private double squaredDistance(double [] values, int offset, double [] centroid) {
+		double sum = 0;
+		for (int i = 0; i < D; i++) {
+			double diff = values[offset + i] - centroid[i];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	public double [][] getCentroids() {
+		return this.centroids;
+	}
+
+	public void setCentroids(double [][] centroids) {
+		this.centroids = centroids;
+	}
+
+	public Dataset getAssignments() {
+		return this.dataset;
+	}
+
+	/**
+	 * @return the statistics of the final clusters, gathered during the last assignment
+	 */
+	public ClusterStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	/**
+	 * Sets how many threads the assignment step may use. Results are identical for any value.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets the iteration engine, {@link Algorithm#AUTO} by default. Every algorithm
+	 * ends with exactly the same assignments.
+	 */
+	public void setAlgorithm(Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Sets how the centroids are initialized when none were given, k-means++ by default.
+	 */
+	public void setSeeding(Seeding seeding) {
+		this.seeding = seeding;
+	}
+
+	/**
+	 * Makes the initialization reproducible.
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Switches to mini-batch K-Means: the centroids are fitted on <code>batches</code>
+	 * random samples of <code>batchSize</code> rows and every row is then assigned once.
+	 * Much faster on very large datasets, at the cost of a slightly worse fit. A batch
+	 * size of 0, or one covering the whole dataset, keeps the full batch iterations.
+	 */
+	public void setMiniBatch(int batchSize, int batches) {
+		this.batchSize = Math.max(0, batchSize);
+		this.batches = batches;
+	}
+
+	/**
+	 * Adds two stopping criteria to the assignments no longer changing, both off
+	 * when 0. The run stops once the squared centroid shifts of an iteration add up
+	 * to at most <code>shift</code> times the mean variance of the columns, or once
+	 * an iteration lowers the inertia by at most <code>inertia</code> times its
+	 * previous value. Ignored in mini-batch mode.
+	 */
+	public void setTolerances(double shift, double inertia) {
+		this.shiftTolerance = Math.max(0, shift);
+		this.inertiaTolerance = Math.max(0, inertia);
+	}
+
+	/**
+	 * Records the timings, iterations and distance computations of the run.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Reports every iteration and checks for cancellation once per iteration and,
+	 * during the assignment, once per block of a few thousand rows.
+	 */
+	public void setProgress(Progress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Sets the distance kernel, {@link DistanceKernel#getDefault()} by default.
+	 */
+	public void setKernel(DistanceKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	/**
+	 * Sets the distance rows are assigned by, {@link Distance#EUCLIDEAN} by default.
+	 * Any other runs Lloyd iterations, whatever the algorithm, and ignores the kd-tree.
+	 * Seeding uses it too.
+	 */
+	public void setDistance(Distance distance) {
+		this.distance = distance;
+	}
+
+	/**
+	 * Runs Lloyd iterations over a single precision copy of the rows, which halves
+	 * the memory they stream through at the cost of precision, whatever the
+	 * algorithm. Ignored with a kd-tree. The copy is cached in the dataset next to
+	 * the double values, so it takes 50% more memory, see {@link Dataset#getFloatCache()}.
+	 */
+	public void setFloat32(boolean float32) {
+		this.float32 = float32;
+	}
+
+	/**
+	 * Runs the iterations on a kd-tree built over this same dataset instead of the
+	 * configured algorithm. Ignored in mini-batch mode.
+	 */
+	public void setTree(KDTree tree) {
+		if (tree != null && tree.getDataset() != this.dataset) throw new IllegalArgumentException("The kd-tree was built over another dataset");
+		this.tree = tree;
+	}
+
+	public static class NotYetRunException extends RuntimeException {}
+
+	/**
+	 * A contiguous range of rows, assigned on its own and holding its own
+	 * list of rows that changed cluster, partial per-cluster statistics and
+	 * count of distance computations.
+	 */
+	private class Chunk implements Callable<Chunk> {
+
+		private final int from;
+		private final int to;
+		private final ClusterStatistics statistics = new ClusterStatistics(K, D);
+		private final int [] moved;
+		private int movedCount;
+		private long distances;
+
+		private Chunk(int from, int to) {
+			this.from = from;
+			this.to = to;
+			this.moved = new int [to - from];
+		}
+
+		@Override
+		public Chunk call() {
+			double [] values = dataset.getValues();
+			float [] floats = floatCentroids != null ? dataset.getFloatCache() : null;
+			int [] assignments = dataset.getAssignments();
+			statistics.clear();
+			movedCount = 0;
+			distances = engine == Algorithm.LLOYD ? (long) (to - from) * K : 0;
+
+			// Assignation, in blocks so that a cancellation is noticed within a few thousand rows
+			for (int block = from; block < to; block += MIN_CHUNK_SIZE) {
+				if (progress != null) progress.checkCanceled();
+				int end = Math.min(to, block + MIN_CHUNK_SIZE);
+				for (int row = block, offset = block * D; row < end; row++, offset += D) {
+					int k;
+					switch (engine) {
+					case ELKAN:
+						k = assignElkan(values, offset, row, assignments[row], this);
+						break;
+					case HAMERLY:
+						k = assignHamerly(values, offset, row, assignments[row], this);
+						break;
+					default:
+						k = floats != null ? distance.nearest(floats, offset, floatCentroids, K, D, kernel) : assignLloyd(values, offset);
+					}
+
+					if (assignments[row] != k) {
+						assignments[row] = k;
+						moved[movedCount++] = row;
+					}
+					if (floats != null) statistics.add(k, floats, offset);
+					else statistics.add(k, values, offset);
+				}
+			}
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,83 @@
+package cat.perez.kmeans;
+
+import java.util.Arrays;
+
+/**
+ * The rows of every cluster of a {@link Dataset}, kept in primitive lists that are
+ * updated one row at a time as rows change cluster, so that the members of a
+ * cluster never have to be looked for among all the rows.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class Membership {
+
+	private final int [] labels;
+	private final int [] positions;
+	private int [][] members = new int [0][];
+	private int [] sizes = new int [0];
+
+	/**
+	 * Indexes the given assignments, rows assigned to a negative cluster are left out.
+	 */
+	public Membership(int [] assignments) {
+		this.labels = new int [assignments.length];
+		this.positions = new int [assignments.length];
+		Arrays.fill(labels, -1);
+		for (int row = 0; row < assignments.length; row++) move(row, assignments[row]);
+	}
+
+	/**
+	 * Moves a row to cluster <code>k</code>, or out of every cluster if it is negative.
+	 */
+	public void move(int row, int k) {
+		int from = labels[row];
+		if (from == k) return;
+		if (from >= 0) {
+			// The last member takes the place of the leaving one
+			int position = positions[row];
+			int last = members[from][--sizes[from]];
+			members[from][position] = last;
+			positions[last] = position;
+		}
+		labels[row] = k;
+		if (k < 0) return;
+		if (k >= sizes.length) {
+			int clusters = Math.max(k + 1, 2 * sizes.length);
+			members = Arrays.copyOf(members, clusters);
+			sizes = Arrays.copyOf(sizes, clusters);
+		}
+		if (members[k] == null) members[k] = new int [16];
+		else if (sizes[k] == members[k].length) members[k] = Arrays.copyOf(members[k], 2 * sizes[k]);
+		positions[row] = sizes[k];
+		members[k][sizes[k]++] = row;
+	}
+
+	/**
+	 * Takes every row out of its cluster, keeping the lists for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(labels, -1);
+		Arrays.fill(sizes, 0);
+	}
+
+	public long getBytes() {
+		long bytes = 4L * (labels.length + positions.length + sizes.length);
+		for (int [] rows : members) if (rows != null) bytes += 4L * rows.length;
+		return bytes;
+	}
+
+	public int size(int k) {
+		return k < sizes.length ? sizes[k] : 0;
+	}
+
+	/**
+	 * @return the rows of cluster <code>k</code>, in ascending order
+	 */
+	public int [] getRows(int k) {
+		if (k < 0 || k >= sizes.length) return new int [0];
+		int [] rows = Arrays.copyOf(members[k], sizes[k]);
+		Arrays.sort(rows);
+		return rows;
+	}
+
+}
@@ -0,0 +1,205 @@
+package cat.perez.kmeans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cat.perez.Progress;
+
+/**
+ * Strategies to pick the initial centroids of a {@link KMeans} run.
+ *
+ * @author Unai & Vicent Perez
+ */
+public enum Seeding {
+
+	/** K uniformly random rows. */
+	RANDOM {
+		@Override
+		public double [][] seed(Dataset dataset, int K, Random random, int threads, Distance distance, Progress progress) {
+			double [][] centroids = new double [K][];
+			for (int i = 0; i < K; i++) centroids[i] = dataset.getRow(random.nextInt(dataset.size()));
+			return centroids;
+		}
+	},
+
+	/** Each new centroid is a row drawn with probability proportional to its squared
+	 *  distance to the closest centroid chosen so far (Arthur & Vassilvitskii, 2007),
+	 *  or to its distance for metrics other than the Euclidean. */
+	KMEANS_PLUS_PLUS {
+		@Override
+		public double [][] seed(Dataset dataset, int K, Random random, int threads, Distance distance, Progress progress) {
+			int N = dataset.size();
+			double [] weights = new double [N];
+			Arrays.fill(weights, 1);
+			return plusPlus(dataset.getValues(), dataset.getDimensions(), weights, K, random, distance, progress);
+		}
+	},
+
+	/** Oversamples about 2K rows per round for a few rounds, then reduces the weighted
+	 *  candidates to K centroids with k-means++ (Bahmani et al., 2012). Needs far fewer
+	 *  passes over the data than k-means++ when K is large. */
+	KMEANS_PARALLEL {
+		@Override
+		public double [][] seed(Dataset dataset, int K, Random random, int threads, Distance distance, Progress progress) {
+			int N = dataset.size();
+			int D = dataset.getDimensions();
+			double [] values = dataset.getValues();
+			double oversampling = 2.0 * K;
+			double [] minDistances = new double [N];
+			int [] closest = new int [N];
+			List<double []> candidates = new ArrayList<>();
+
+			candidates.add(dataset.getRow(random.nextInt(N)));
+			Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+			ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+			try {
+				double cost = update(values, D, candidates, 0, minDistances, closest, executor, distance, progress);
+				for (int round = 0; round < PARALLEL_ROUNDS && cost > 0; round++) {
+					int first = candidates.size();
+					for (int i = 0; i < N; i++) {
+						if (random.nextDouble() < oversampling * minDistances[i] / cost) candidates.add(dataset.getRow(i));
+					}
+					cost = update(values, D, candidates, first, minDistances, closest, executor, distance, progress);
+				}
+			} finally {
+				if (executor != null) executor.shutdownNow();
+			}
+			if (candidates.size() <= K) return KMEANS_PLUS_PLUS.seed(dataset, K, random, threads, distance, progress);
+
+			// Weigh every candidate by the amount of rows closest to it and recluster them
+			double [] weights = new double [candidates.size()];
+			for (int i = 0; i < N; i++) weights[closest[i]]++;
+			double [] candidateValues = new double [candidates.size() * D];
+			for (int c = 0; c < candidates.size(); c++) System.arraycopy(candidates.get(c), 0, candidateValues, c * D, D);
+			return plusPlus(candidateValues, D, weights, K, random, distance, progress);
+		}
+	};
+
+	private static final int PARALLEL_ROUNDS = 5;
+	private static final int CHUNK_SIZE = 8192;
+	/** Plain loops, so that the initial centroids do not depend on the kernel in use. */
+	private static final DistanceKernel KERNEL = DistanceKernel.SCALAR;
+
+	/**
+	 * @param threads how many threads the passes over the data may use, results do not depend on it
+	 * @return K initial centroids, each a fresh array of the dataset's dimensions
+	 */
+	public double [][] seed(Dataset dataset, int K, Random random, int threads) {
+		return this.seed(dataset, K, random, threads, null);
+	}
+
+	/**
+	 * @param progress checked for cancellation once per pass over a chunk of rows, may be null
+	 * @see #seed(Dataset, int, Random, int)
+	 */
+	public double [][] seed(Dataset dataset, int K, Random random, int threads, Progress progress) {
+		return this.seed(dataset, K, random, threads, Distance.EUCLIDEAN, progress);
+	}
+
+	/**
+	 * @param distance the metric rows are weighed by, the dataset already prepared for it
+	 * @see #seed(Dataset, int, Random, int, Progress)
+	 */
+	public abstract double [][] seed(Dataset dataset, int K, Random random, int threads, Distance distance, Progress progress);
+
+	/**
+	 * Lowers the distance of every row to its closest candidate with the
+	 * candidates from <code>first</code> on, in parallel chunks when an executor is given.
+	 *
+	 * @return the total cost, summed in chunk order
+	 */
+	private static double update(double [] values, int D, List<double []> candidates, int first,
+			double [] minDistances, int [] closest, ExecutorService executor, Distance distance, Progress progress) {
+		int N = minDistances.length;
+		List<Callable<Double>> chunks = new ArrayList<>();
+		for (int from = 0; from < N; from += CHUNK_SIZE) {
+			final int start = from;
+			final int end = Math.min(N, from + CHUNK_SIZE);
+			chunks.add(() -> {
+				if (progress != null) progress.checkCanceled();
+				double cost = 0;
+				for (int i = start; i < end; i++) {
+					for (int c = first; c < candidates.size(); c++) {
+						double d = distance.distance(values, i * D, candidates.get(c), 0, D, KERNEL);
+						if (d < minDistances[i]) {
+							minDistances[i] = d;
+							closest[i] = c;
+						}
+					}
+					cost += minDistances[i];
+				}
+				return cost;
+			});
+		}
+		double cost = 0;
+		try {
+			if (executor == null) {
+				for (Callable<Double> chunk : chunks) cost += chunk.call();
+			} else {
+				for (Future<Double> future : executor.invokeAll(chunks)) cost += future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Seeding was interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+			throw new IllegalStateException("Seeding failed", e.getCause());
+		} catch (CancellationException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException("Seeding failed", e);
+		}
+		return cost;
+	}
+
+	/**
+	 * Weighted k-means++ over the rows of a row-major array.
+	 */
+	private static double [][] plusPlus(double [] values, int D, double [] weights, int K, Random random, Distance distance, Progress progress) {
+		int N = weights.length;
+		double [][] centroids = new double [K][];
+		double [] minDistances = new double [N];
+		Arrays.fill(minDistances, Double.POSITIVE_INFINITY);
+		int chosen = pick(weights, null, random);
+		for (int k = 0; k < K; k++) {
+			centroids[k] = Arrays.copyOfRange(values, chosen * D, (chosen + 1) * D);
+			if (k == K - 1) break;
+			if (progress != null) progress.checkCanceled();
+			for (int i = 0; i < N; i++) {
+				double d = distance.distance(values, i * D, centroids[k], 0, D, KERNEL);
+				if (d < minDistances[i]) minDistances[i] = d;
+			}
+			chosen = pick(weights, minDistances, random);
+		}
+		return centroids;
+	}
+
+	/**
+	 * Draws a row with probability proportional to its weight, times its distance
+	 * when given. Falls back to the weights alone once every distance is zero.
+	 */
+	private static int pick(double [] weights, double [] minDistances, Random random) {
+		double total = 0;
+		for (int i = 0; i < weights.length; i++) total += minDistances == null ? weights[i] : weights[i] * minDistances[i];
+		if (total <= 0) return minDistances == null ? random.nextInt(weights.length) : pick(weights, null, random);
+		double target = random.nextDouble() * total;
+		int last = 0;
+		for (int i = 0; i < weights.length; i++) {
+			double weight = minDistances == null ? weights[i] : weights[i] * minDistances[i];
+			if (weight <= 0) continue;
+			last = i;
+			target -= weight;
+			if (target < 0) return i;
+		}
+		return last;
+	}
+
+}
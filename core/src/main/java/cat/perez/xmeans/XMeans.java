@@ -0,0 +1,470 @@
+package cat.perez.xmeans;
+
+import static java.lang.Math.PI;
+import static java.lang.Math.log10;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cat.perez.Metrics;
+import cat.perez.Progress;
+import cat.perez.kmeans.ClusterStatistics;
+import cat.perez.kmeans.Dataset;
+import cat.perez.kmeans.Distance;
+import cat.perez.kmeans.KDTree;
+import cat.perez.kmeans.KMeans;
+import cat.perez.kmeans.Seeding;
+
+public class XMeans {
+
+	private Dataset dataset;
+	private int lowerK;
+	private int upperK;
+	private int D;
+	private int threads = 1;
+	private KMeans.Algorithm algorithm = KMeans.Algorithm.AUTO;
+	private Seeding seeding = Seeding.KMEANS_PLUS_PLUS;
+	private Random random = new Random();
+	private int batchSize = 0;
+	private int batches = 0;
+	private int maxIterations = 100000;
+	private double shiftTolerance = 0;
+	private double inertiaTolerance = 0;
+	private boolean float32 = false;
+	private Distance distance = Distance.EUCLIDEAN;
+	private Metrics metrics;
+	private Progress progress;
+
+	private double [][] centroids;
+
+	/** Score and centroids of every structure round; only the best round keeps its assignments. */
+	private List<Result> results = new ArrayList<>();
+	private int best = -1;
+	private int [] bestAssignments;
+
+	/** Largest centroid coordinate change at which a kd-tree 2-means split has converged. */
+	private static final double TREE_TOLERANCE = 1e-12;
+
+	private boolean useTree = false;
+	private KDTree tree;
+	private ClusterStatistics statistics;
+
+	public XMeans(Dataset dataset, int lowerK, int upperK) {
+		this.dataset = dataset;
+		this.lowerK = lowerK;
+		this.upperK = upperK;
+		this.D = dataset.getDimensions();
+	}
+
+	public void run() {
+		int k = this.centroids != null ? this.centroids.length : this.lowerK;
+		boolean kChanged;
+		initialize();
+		if (this.useTree && this.distance == Distance.EUCLIDEAN) this.tree = new KDTree(this.dataset);
+		int round = 0;
+		do {
+			improveParams(k);
+			int newK = improveStructure(k);
+			kChanged = newK != k;
+			k = newK;
+			if (this.progress != null) {
+				this.progress.checkCanceled();
+				this.progress.report(Math.min(1, (k - this.lowerK + 1.0) / (this.upperK - this.lowerK + 1)), "Round " + ++round + ", " + k + " clusters");
+			}
+		} while (k <= this.upperK && kChanged);
+	}
+
+	private void initialize() {
+		if (this.progress != null) this.progress.checkCanceled();
+		this.distance.prepare(this.dataset);
+		if (this.centroids != null) return;
+		long start = System.nanoTime();
+		this.centroids = seeding.seed(dataset, this.lowerK, random, this.threads, this.distance, this.progress);
+		if (this.metrics != null) this.metrics.time(Metrics.SEEDING, System.nanoTime() - start);
+	}
+
+	private void improveParams(int k) {
+		this.log("Improving parameters (k=" + k + ")");
+		KMeans kmeans = new KMeans(this.dataset, k, this.maxIterations);
+		kmeans.setThreads(this.threads);
+		kmeans.setAlgorithm(this.algorithm);
+		kmeans.setMiniBatch(this.batchSize, this.batches);
+		// Mini-batches are drawn from the run's own random, seeded from this one
+		kmeans.setSeed(this.random.nextLong());
+		kmeans.setTolerances(this.shiftTolerance, this.inertiaTolerance);
+		kmeans.setFloat32(this.float32);
+		kmeans.setDistance(this.distance);
+		kmeans.setTree(this.tree);
+		kmeans.setMetrics(this.metrics);
+		if (this.progress != null) kmeans.setProgress(this.progress.silent());
+		kmeans.setCentroids(this.centroids);
+		kmeans.run();
+		this.dataset = kmeans.getAssignments();
+		this.centroids = kmeans.getCentroids();
+		this.statistics = kmeans.getStatistics();
+	}
+
+	private int improveStructure(int k) {
+		this.log("Improving structure (k=" + k + ")");
+		int newK = k;
+		ClusterStatistics parents = this.statistics;
+		ClusterStatistics next = new ClusterStatistics(2 * k, this.D);
+		for (int i = 0; i < k; i++) next.set(i, parents, i);
+		int parallelism = Math.max(1, Math.min(this.threads, k));
+		List<Trial> trials = new ArrayList<>();
+		for (int i = 0; i < k; i++) {
+			// The random draws are taken here, in cluster order, so they do not depend on the scheduling
+			double [] centroid = centroids[i];
+			double [] newCentroid0 = dataset.getRow(random.nextInt(dataset.size()));
+			double [] newCentroid1 = new double [newCentroid0.length];
+			for (int j = 0; j < newCentroid0.length; j++) newCentroid1[j] = -(newCentroid0[j] - centroid[j]) + centroid[j];
+			int [] rows = this.tree == null ? this.dataset.rowsOf(i) : null;
+			trials.add(new Trial(i, rows, new double [][] {newCentroid0, newCentroid1}, Math.max(1, this.threads / parallelism)));
+		}
+		long start = System.nanoTime();
+		this.runTrials(trials, parallelism);
+		if (this.metrics != null) {
+			this.metrics.time(Metrics.SPLIT_TRIALS, System.nanoTime() - start);
+			long bytes = this.dataset.getBytes() + (this.tree != null ? this.tree.getBytes() : 0);
+			for (Trial trial : trials) {
+				this.metrics.add(trial.metrics);
+				if (trial.rows != null) bytes += trial.rows.length * (8L * this.D + 4);
+			}
+			this.metrics.peak(Metrics.PEAK_BYTES, bytes);
+			this.metrics.count(Metrics.BIC_EVALUATIONS, 2L * k + 1);
+		}
+		for (int i = 0; i < k; i++) {
+			Trial trial = trials.get(i);
+			double [][] split = trial.split;
+			ClusterStatistics children = trial.children;
+			ClusterStatistics parent = new ClusterStatistics(1, this.D);
+			parent.set(0, parents, i);
+			double originalClusterScore = BIC(parent, 1);
+			double newClusterScore = BIC(children, 2);
+			if (this.metrics != null) this.metrics.count(newClusterScore > originalClusterScore ? Metrics.SPLITS_ACCEPTED : Metrics.SPLITS_REJECTED, 1);
+			if (newClusterScore > originalClusterScore) {
+				if (this.tree != null) {
+					children.clear();
+					this.tree.assign(split, new int [] {i, newK}, i, children);
+				} else {
+					Dataset subset = trial.subset;
+					for (int j = 0; j < subset.size(); j++) {
+						dataset.setAssignment(trial.rows[j], subset.getAssignment(j) == 0 ? i : newK);
+					}
+				}
+				next.set(i, children, 0);
+				next.set(newK, children, 1);
+				this.log("Split cluster " + i + " into clusters " + i + " and " + newK);
+				centroids = Arrays.copyOf(centroids, newK + 1);
+				centroids[i] = split[0];
+				centroids[newK] = split[1];
+				newK++;
+			}
+		}
+		Result round = new Result(BIC(next, newK), null, copyOf(this.centroids));
+		results.add(round);
+		// Ties keep the earliest round
+		if (best < 0 || Double.compare(round.getScore(), results.get(best).getScore()) > 0) {
+			best = results.size() - 1;
+			if (bestAssignments == null) bestAssignments = new int [dataset.size()];
+			System.arraycopy(dataset.getAssignments(), 0, bestAssignments, 0, bestAssignments.length);
+		}
+		return newK;
+	}
+
+	/**
+	 * Runs the split trials on up to <code>parallelism</code> threads. Every trial only
+	 * reads the rows of its own cluster, so they can run in any order; the accepted
+	 * splits are applied afterwards in cluster order.
+	 */
+	private void runTrials(List<Trial> trials, int parallelism) {
+		if (parallelism <= 1) {
+			for (Trial trial : trials) trial.call();
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		try {
+			for (Future<Trial> future : executor.invokeAll(trials)) future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("X-Means split trials were interrupted", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+			throw new IllegalStateException("X-Means split trial failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * 2-means over the rows of cluster <code>parent</code>, straight from the tree.
+	 * The given centroids are refined in place. Stops as {@link KMeans} would.
+	 *
+	 * @return the statistics of both halves
+	 */
+	private ClusterStatistics splitWithTree(int parent, double [][] split, Metrics metrics) {
+		ClusterStatistics children = new ClusterStatistics(2, this.D);
+		double [] mean = new double [this.D];
+		double variance = Double.NaN;
+		double inertia = Double.NaN;
+		for (int iteration = 0; iteration < this.maxIterations; iteration++) {
+			if (this.progress != null) this.progress.checkCanceled();
+			children.clear();
+			long distances = this.tree.fit(split, parent, children);
+			if (metrics != null) {
+				metrics.count(Metrics.ITERATIONS, 1);
+				metrics.count(Metrics.DISTANCES, distances);
+				metrics.count(Metrics.SKIPPED_DISTANCES, 2 * children.getTotalCount() - distances);
+			}
+			if (Double.isNaN(variance)) variance = children.getTotalScatter() / ((double) children.getTotalCount() * this.D);
+			double shift = 0;
+			double squaredShift = 0;
+			for (int c = 0; c < 2; c++) {
+				if (!children.getMean(c, mean)) continue;
+				for (int j = 0; j < this.D; j++) {
+					double diff = mean[j] - split[c][j];
+					shift = Math.max(shift, Math.abs(diff));
+					squaredShift += diff * diff;
+					split[c][j] = mean[j];
+				}
+			}
+			if (shift <= TREE_TOLERANCE) break;
+			if (this.shiftTolerance > 0 && squaredShift <= this.shiftTolerance * variance) break;
+			double current = children.getScatter(0) + children.getScatter(1);
+			if (this.inertiaTolerance > 0 && !Double.isNaN(inertia) && inertia - current <= this.inertiaTolerance * inertia) break;
+			inertia = current;
+		}
+		return children;
+	}
+
+	private void log(String message) {
+		if (this.progress != null) this.progress.log(message);
+	}
+
+	/**
+	 * BIC of the first <code>K</code> clusters of the given statistics.
+	 */
+	public static double BIC(ClusterStatistics statistics, int K) {
+		int D = statistics.getDimensions();
+		int N = 0;
+		for (int k = 0; k < K; k++) N += statistics.getCount(k);
+		int q = D * (K + 1);
+		double bic = - (q / 2) * log10(N);
+		for (int k = 0; k < K; k++) {
+			int Rk = (int) statistics.getCount(k);
+			bic += -(Rk / 2) * log10(2 * PI) - (Rk * D / 2) * log10(estimateVariance(statistics, k)) - ((Rk - K) / 2) + Rk * log10(Rk) - Rk * log10(N);
+		}
+		return bic;
+	}
+
+	private static double estimateVariance(ClusterStatistics statistics, int k) {
+		return statistics.getScatter(k) / (statistics.getCount(k) - statistics.getDimensions());
+	}
+
+	private static double [][] copyOf(double [][] centroids) {
+		double [][] copy = new double [centroids.length][];
+		for (int i = 0; i < centroids.length; i++) copy[i] = centroids[i].clone();
+		return copy;
+	}
+
+	/**
+	 * Sets how many threads every K-Means run may use for its assignment step.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets the iteration engine of every K-Means run.
+	 */
+	public void setAlgorithm(KMeans.Algorithm algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Sets how the lower bound centroids are initialized, k-means++ by default.
+	 */
+	public void setSeeding(Seeding seeding) {
+		this.seeding = seeding;
+	}
+
+	/**
+	 * Fits the centroids of the whole dataset with mini-batch K-Means, see {@link KMeans#setMiniBatch(int, int)}.
+	 */
+	public void setMiniBatch(int batchSize, int batches) {
+		this.batchSize = batchSize;
+		this.batches = batches;
+	}
+
+	/**
+	 * Caps the iterations of every K-Means run, 100000 by default.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Passes the stopping tolerances on to every K-Means run and split trial.
+	 *
+	 * @see KMeans#setTolerances(double, double)
+	 */
+	public void setTolerances(double shift, double inertia) {
+		this.shiftTolerance = Math.max(0, shift);
+		this.inertiaTolerance = Math.max(0, inertia);
+	}
+
+	/**
+	 * Runs every K-Means and split trial in single precision, see {@link KMeans#setFloat32(boolean)}.
+	 */
+	public void setFloat32(boolean float32) {
+		this.float32 = float32;
+	}
+
+	/**
+	 * Sets the distance every K-Means run and split trial assigns rows by, see
+	 * {@link KMeans#setDistance(Distance)}. The kd-tree is only built for the
+	 * Euclidean distance. The BIC still models every cluster as a spherical
+	 * Gaussian around its mean.
+	 */
+	public void setDistance(Distance distance) {
+		this.distance = distance;
+	}
+
+	/**
+	 * Records the timings and counters of the search, and the iterations of its
+	 * K-Means runs. Split trials only add to the counters.
+	 */
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Reports every round of the search. Its K-Means runs and split trials only
+	 * check for cancellation, as often as a single {@link KMeans} run does.
+	 */
+	public void setProgress(Progress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Builds a kd-tree over the dataset once and runs every K-Means, split trial
+	 * and BIC evaluation from the statistics cached in its nodes. Passes over the
+	 * tree are not split across threads.
+	 */
+	public void setKDTree(boolean useTree) {
+		this.useTree = useTree;
+	}
+
+	/**
+	 * Starts the search from the given centroids instead of seeding the lower bound
+	 * of clusters, typically those of a previous run over similar data.
+	 */
+	public void setCentroids(double [][] centroids) {
+		if (centroids.length < 1 || centroids.length > this.upperK) {
+			throw new IllegalArgumentException("Expected between 1 and " + this.upperK + " initial centroids but got " + centroids.length);
+		}
+		this.centroids = XMeans.copyOf(centroids);
+	}
+
+	/**
+	 * Makes the initialization and the split trials reproducible.
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * @return the round of highest score, with the assignments it had
+	 */
+	public Result getBestAssignments() {
+		if (best < 0) throw new NoSuchElementException("X-Means has not been run");
+		Result result = results.get(best);
+		return new Result(result.getScore(), bestAssignments, result.getCentroids());
+	}
+
+	/**
+	 * The 2-means split of one cluster, run on its own subset or on the kd-tree.
+	 */
+	private class Trial implements Callable<Trial> {
+
+		private final int parent;
+		private final int threads;
+		private double [][] split;
+		private final int [] rows;
+		private Dataset subset;
+		private ClusterStatistics children;
+		private final Metrics metrics;
+
+		private Trial(int parent, int [] rows, double [][] split, int threads) {
+			this.parent = parent;
+			this.rows = rows;
+			this.split = split;
+			this.threads = threads;
+			// Each trial counts on its own, the counts are added up in cluster order
+			this.metrics = XMeans.this.metrics != null ? new Metrics() : null;
+		}
+
+		@Override
+		public Trial call() {
+			if (progress != null) progress.checkCanceled();
+			if (tree != null) {
+				this.children = splitWithTree(this.parent, this.split, this.metrics);
+				return this;
+			}
+			KMeans kmeans = new KMeans(dataset.subset(this.rows), 2, maxIterations);
+			kmeans.setThreads(this.threads);
+			kmeans.setAlgorithm(algorithm);
+			kmeans.setTolerances(shiftTolerance, inertiaTolerance);
+			kmeans.setFloat32(float32);
+			kmeans.setDistance(distance);
+			kmeans.setMetrics(this.metrics);
+			if (progress != null) kmeans.setProgress(progress.silent());
+			kmeans.setCentroids(this.split);
+			kmeans.run();
+			this.subset = kmeans.getAssignments();
+			this.split = kmeans.getCentroids();
+			this.children = kmeans.getStatistics();
+			return this;
+		}
+
+	}
+
+	public static class Result {
+
+		private double score;
+		private int [] assignments;
+		private double [][] centroids;
+
+		public Result(double score, int [] assignments, double [][] centroids) {
+			this.score = score;
+			this.assignments = assignments;
+			this.centroids = centroids;
+		}
+
+		public double getScore() {
+			return this.score;
+		}
+
+		/**
+		 * @return the cluster of every row, in the order of the clustered {@link Dataset}
+		 */
+		public int [] getAssignments() {
+			return this.assignments;
+		}
+
+		public double [][] getCentroids() {
+			return this.centroids;
+		}
+
+	}
+
+}
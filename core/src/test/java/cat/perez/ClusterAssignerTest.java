@@ -0,0 +1,56 @@
+package cat.perez;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import cat.perez.kmeans.Blobs;
+import cat.perez.kmeans.Dataset;
+import cat.perez.kmeans.Distance;
+import cat.perez.kmeans.DistanceKernel;
+import cat.perez.kmeans.KMeans;
+
+/**
+ * Scoring the clustered rows again, in input units, must give back the clusters
+ * the run assigned them to, whatever the distance.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterAssignerTest {
+
+	private static final int D = 4;
+	private static final int K = 6;
+
+	@Test
+	public void agreesWithTraining() {
+		// Shifted and scaled, so that the columns really have to be standardized
+		double [] raw = Blobs.generate(10000, D, K, 2, 1).getValues().clone();
+		for (int i = 0; i < raw.length; i++) raw[i] = 100 + raw[i] * (1 + i % D);
+		for (Distance distance : Distance.values()) {
+			double [] values = raw.clone();
+			ColumnStatistics columns = ColumnStatistics.standardize(values, D);
+			KMeans kmeans = new KMeans(new Dataset(values, D), K, 1000);
+			kmeans.setSeed(7);
+			kmeans.setKernel(DistanceKernel.SCALAR);
+			kmeans.setDistance(distance);
+			kmeans.run();
+
+			double [] means = new double [D];
+			double [] stdDevs = new double [D];
+			for (int j = 0; j < D; j++) {
+				means[j] = columns.getMean(j);
+				stdDevs[j] = columns.getStdDev(j);
+			}
+			double [] centroids = new double [K * D];
+			for (int k = 0; k < K; k++) System.arraycopy(kmeans.getCentroids()[k], 0, centroids, k * D, D);
+			ClusterAssigner assigner = new ClusterAssigner(centroids, means, stdDevs, distance, DistanceKernel.SCALAR);
+			int [] assignments = kmeans.getAssignments().getAssignments();
+			for (int i = 0; i < assignments.length; i++) {
+				assertEquals(distance + ", row " + i, assignments[i], assigner.assign(Arrays.copyOfRange(raw, i * D, (i + 1) * D)));
+			}
+		}
+	}
+
+}
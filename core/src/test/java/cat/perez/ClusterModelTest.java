@@ -0,0 +1,90 @@
+package cat.perez;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cat.perez.kmeans.Distance;
+
+/**
+ * @author Unai & Vicent Perez
+ */
+public class ClusterModelTest {
+
+	private static final int N = 500;
+	private static final int K = 7;
+	private static final int D = 3;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(3);
+	private final double [] values = new double [N * D];
+	private final double [][] centroids = new double [K][D];
+	private final int [] assignments = new int [N];
+	private final ColumnStatistics columns;
+
+	public ClusterModelTest() {
+		for (int i = 0; i < values.length; i++) values[i] = random.nextGaussian() * 3 + 1;
+		columns = ColumnStatistics.standardize(values, D);
+		for (double [] centroid : centroids) {
+			for (int j = 0; j < D; j++) centroid[j] = random.nextDouble();
+		}
+		for (int i = 0; i < N; i++) assignments[i] = random.nextInt(K);
+	}
+
+	private void assertModel(ClusterModel model, Distance distance) {
+		assertEquals(K, model.getK());
+		assertEquals(D, model.getDimensions());
+		assertEquals(distance, model.getDistance());
+		for (int j = 0; j < D; j++) {
+			assertEquals(columns.getMean(j), model.getMean(j), 0);
+			assertEquals(columns.getStdDev(j), model.getStdDev(j), 0);
+		}
+		long [] sizes = new long [K];
+		for (int k : assignments) sizes[k]++;
+		for (int k = 0; k < K; k++) {
+			assertEquals(sizes[k], model.getSize(k));
+			assertArrayEquals(centroids[k], model.getCentroids()[k], 0);
+		}
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		for (Distance distance : Distance.values()) {
+			File file = folder.newFile();
+			new ClusterModel(centroids, assignments, columns, distance).write(file);
+			assertModel(ClusterModel.read(file), distance);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherVersions() throws IOException {
+		File file = folder.newFile();
+		new ClusterModel(centroids, assignments, columns, Distance.EUCLIDEAN).write(file);
+		byte [] bytes = Files.readAllBytes(file.toPath());
+		ByteBuffer.wrap(bytes).putInt(4, 2);
+		Files.write(file.toPath(), bytes);
+		ClusterModel.read(file);
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsTruncatedFiles() throws IOException {
+		File file = folder.newFile();
+		new ClusterModel(centroids, assignments, columns, Distance.EUCLIDEAN).write(file);
+		byte [] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 8));
+		ClusterModel.read(file);
+	}
+
+}
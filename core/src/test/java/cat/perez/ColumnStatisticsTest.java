@@ -0,0 +1,48 @@
+package cat.perez;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author Unai & Vicent Perez
+ */
+public class ColumnStatisticsTest {
+
+	private static double [] rows(long seed, double mean, double stdDev) {
+		Random random = new Random(seed);
+		double [] values = new double [300];
+		for (int i = 0; i < values.length; i++) values[i] = mean + random.nextGaussian() * stdDev;
+		// A constant column, which is only centered
+		for (int i = 2; i < values.length; i += 3) values[i] = 5;
+		return values;
+	}
+
+	/**
+	 * A centroid standardized by one run and carried to another run over data of
+	 * other column statistics must land where its input units standardize to.
+	 */
+	@Test
+	public void centroidsCarryOverToOtherStatistics() {
+		ColumnStatistics first = ColumnStatistics.standardize(rows(1, 10, 4), 3);
+		ColumnStatistics second = ColumnStatistics.standardize(rows(2, -3, 0.5), 3);
+		double [] centroid = {12.5, 7, 5};
+		for (int j = 0; j < centroid.length; j++) {
+			double stored = first.standardize(j, centroid[j]);
+			double back = ColumnStatistics.destandardize(stored, first.getMean(j), first.getStdDev(j));
+			assertEquals(centroid[j], back, 1e-12);
+			assertEquals(second.standardize(j, centroid[j]), second.standardize(j, back), 1e-12);
+		}
+	}
+
+	@Test
+	public void singleValuesMatchWholeRows() {
+		double [] values = rows(3, 1, 2);
+		double [] raw = values.clone();
+		ColumnStatistics statistics = ColumnStatistics.standardize(values, 3);
+		for (int i = 0; i < values.length; i++) assertEquals(values[i], statistics.standardize(i % 3, raw[i]), 0);
+	}
+
+}
@@ -0,0 +1,73 @@
+package cat.perez.kmeans;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import cat.perez.Metrics;
+
+/**
+ * Iterations must not allocate: a run of 12 iterations may allocate no more than
+ * a run of 2 on the same data, only initialization does.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class AllocationTest {
+
+	private static final int N = 20000;
+	private static final int D = 4;
+	private static final int K = 30;
+	/** Slack for the odd allocation that is not per row, such as boxing a counter. */
+	private static final long SLACK_BYTES = 1024;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+		com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+		if (!sun.isThreadAllocatedMemorySupported()) return null;
+		sun.setThreadAllocatedMemoryEnabled(true);
+		return sun;
+	}
+
+	private static KMeans kmeans(Dataset dataset, KMeans.Algorithm algorithm, int iterations) {
+		KMeans kmeans = new KMeans(dataset, K, iterations);
+		kmeans.setSeed(7);
+		kmeans.setAlgorithm(algorithm);
+		kmeans.setThreads(1);
+		return kmeans;
+	}
+
+	private static long allocated(Dataset dataset, KMeans.Algorithm algorithm, int iterations) {
+		KMeans kmeans = kmeans(dataset, algorithm, iterations);
+		long thread = Thread.currentThread().getId();
+		long before = THREADS.getThreadAllocatedBytes(thread);
+		kmeans.run();
+		return THREADS.getThreadAllocatedBytes(thread) - before;
+	}
+
+	@Test
+	public void iterationsDoNotAllocate() {
+		assumeTrue("Thread allocation counting is not supported", THREADS != null);
+		// Overlapping blobs, so that no run converges before its iteration cap
+		Dataset dataset = Blobs.generate(N, D, K, 1, 1);
+		Metrics metrics = new Metrics();
+		KMeans check = kmeans(dataset, KMeans.Algorithm.LLOYD, 12);
+		check.setMetrics(metrics);
+		check.run();
+		assumeTrue("The dataset converges too early", metrics.getIterations() == 12);
+
+		for (KMeans.Algorithm algorithm : new KMeans.Algorithm [] {KMeans.Algorithm.LLOYD, KMeans.Algorithm.ELKAN, KMeans.Algorithm.HAMERLY}) {
+			// Warm up, so that the measured runs take the same compiled paths
+			for (int i = 0; i < 3; i++) allocated(dataset, algorithm, 12);
+			long two = allocated(dataset, algorithm, 2);
+			long twelve = allocated(dataset, algorithm, 12);
+			assertTrue(algorithm + " allocated " + two + " bytes in 2 iterations but " + twelve + " in 12", twelve - two <= SLACK_BYTES);
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package cat.perez.kmeans;
+
+import java.util.Random;
+
+/**
+ * Synthetic datasets of K Gaussian blobs with unit variance, whose centers are
+ * drawn with a standard deviation of <code>separation</code> along every dimension.
+ * Low separations give overlapping blobs, high ones well separated clusters.
+ * Shared with the benchmarks through the test jar of this module.
+ *
+ * @author Unai & Vicent Perez
+ */
+public final class Blobs {
+
+	private Blobs() {}
+
+	public static Dataset generate(int N, int D, int K, double separation, long seed) {
+		Random random = new Random(seed);
+		double [][] centers = new double [K][D];
+		for (double [] center : centers) {
+			for (int j = 0; j < D; j++) center[j] = random.nextGaussian() * separation;
+		}
+		double [] values = new double [Dataset.length(N, D)];
+		for (int i = 0, offset = 0; i < N; i++, offset += D) {
+			double [] center = centers[random.nextInt(K)];
+			for (int j = 0; j < D; j++) values[offset + j] = center[j] + random.nextGaussian();
+		}
+		return new Dataset(values, D);
+	}
+
+}
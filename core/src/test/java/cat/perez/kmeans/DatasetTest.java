@@ -0,0 +1,39 @@
+package cat.perez.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Unai & Vicent Perez
+ */
+public class DatasetTest {
+
+	@Test
+	public void normalizeLeavesTheCallersArray() {
+		double [] values = {3, 4, 0, 0, 1, 1};
+		double [] original = values.clone();
+		Dataset dataset = new Dataset(values, 2);
+		Dataset before = dataset.copy();
+		dataset.normalize();
+		assertArrayEquals(original, values, 0);
+		assertArrayEquals(original, before.getValues(), 0);
+		assertArrayEquals(new double [] {0.6, 0.8, 0, 0, Math.sqrt(0.5), Math.sqrt(0.5)}, dataset.getValues(), 1e-15);
+		assertArrayEquals(dataset.getValues(), dataset.copy().getValues(), 0);
+	}
+
+	@Test
+	public void cosineKMeansLeavesTheCallersArray() {
+		Dataset blobs = Blobs.generate(5000, 3, 4, 3, 1);
+		double [] values = blobs.getValues();
+		double [] original = values.clone();
+		KMeans kmeans = new KMeans(new Dataset(values, 3), 4, 100);
+		kmeans.setSeed(7);
+		kmeans.setDistance(Distance.COSINE);
+		kmeans.run();
+		assertArrayEquals(original, values, 0);
+		assertEquals(5000, kmeans.getAssignments().size());
+	}
+
+}
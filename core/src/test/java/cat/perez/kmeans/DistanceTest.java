@@ -0,0 +1,78 @@
+package cat.perez.kmeans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import cat.perez.Metrics;
+
+/**
+ * Clustering by the Manhattan and cosine distances.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class DistanceTest {
+
+	private static final int N = 6000;
+	private static final int D = 3;
+	private static final int K = 4;
+
+	/**
+	 * @return the share of rows whose cluster holds a majority of their true label
+	 */
+	private static double purity(int [] assignments, int [] labels) {
+		int [][] counts = new int [K][K];
+		for (int i = 0; i < assignments.length; i++) counts[assignments[i]][labels[i]]++;
+		int majority = 0;
+		for (int [] cluster : counts) {
+			int max = 0;
+			for (int count : cluster) max = Math.max(max, count);
+			majority += max;
+		}
+		return (double) majority / assignments.length;
+	}
+
+	@Test
+	public void cosineSeparatesDirections() {
+		// Rays along the axes and a diagonal, at very different lengths, so that only the direction tells them apart
+		double [][] directions = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {-1, -1, -1}};
+		Random random = new Random(1);
+		double [] values = new double [N * D];
+		int [] labels = new int [N];
+		for (int i = 0; i < N; i++) {
+			labels[i] = random.nextInt(K);
+			double length = 0.5 + 20 * random.nextDouble();
+			for (int j = 0; j < D; j++) values[i * D + j] = length * (directions[labels[i]][j] + 0.05 * random.nextGaussian());
+		}
+		KMeans kmeans = new KMeans(new Dataset(values, D), K, 1000);
+		kmeans.setSeed(7);
+		kmeans.setDistance(Distance.COSINE);
+		kmeans.run();
+		assertEquals(1, purity(kmeans.getAssignments().getAssignments(), labels), 0);
+	}
+
+	@Test
+	public void manhattanConverges() {
+		Random random = new Random(2);
+		double [] values = new double [N * D];
+		int [] labels = new int [N];
+		for (int i = 0; i < N; i++) {
+			labels[i] = random.nextInt(K);
+			for (int j = 0; j < D; j++) values[i * D + j] = 20 * labels[i] * (j == labels[i] % D ? 1 : -1) + random.nextGaussian();
+		}
+		Metrics metrics = new Metrics();
+		KMeans kmeans = new KMeans(new Dataset(values, D), K, 1000);
+		kmeans.setSeed(7);
+		kmeans.setDistance(Distance.MANHATTAN);
+		kmeans.setMetrics(metrics);
+		kmeans.run();
+		int iterations = metrics.getIterations();
+		assertTrue(iterations + " iterations", iterations < 1000);
+		assertEquals(0, metrics.getMoved(iterations - 1));
+		assertEquals(1, purity(kmeans.getAssignments().getAssignments(), labels), 0);
+	}
+
+}
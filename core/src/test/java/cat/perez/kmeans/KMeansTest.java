@@ -0,0 +1,60 @@
+package cat.perez.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Every engine and thread count must give the very same clustering. Lloyd, Elkan
+ * and Hamerly agree bit for bit; the kd-tree adds whole nodes up at once, so its
+ * centroids may differ in the last bits.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class KMeansTest {
+
+	private static final int N = 20000;
+	private static final int D = 5;
+	private static final int K = 8;
+
+	private static KMeans run(KMeans.Algorithm algorithm, boolean tree, int threads) {
+		Dataset dataset = Blobs.generate(N, D, K, 3, 1);
+		KMeans kmeans = new KMeans(dataset, K, 1000);
+		kmeans.setSeed(7);
+		kmeans.setAlgorithm(algorithm);
+		kmeans.setThreads(threads);
+		if (tree) kmeans.setTree(new KDTree(dataset));
+		kmeans.run();
+		return kmeans;
+	}
+
+	private static void assertSameClustering(KMeans expected, KMeans actual) {
+		assertSameClustering(expected, actual, 0);
+	}
+
+	private static void assertSameClustering(KMeans expected, KMeans actual, double delta) {
+		assertArrayEquals(expected.getAssignments().getAssignments(), actual.getAssignments().getAssignments());
+		assertEquals(expected.getCentroids().length, actual.getCentroids().length);
+		for (int k = 0; k < expected.getCentroids().length; k++) {
+			assertArrayEquals(expected.getCentroids()[k], actual.getCentroids()[k], delta);
+		}
+	}
+
+	@Test
+	public void enginesAgree() {
+		KMeans lloyd = run(KMeans.Algorithm.LLOYD, false, 1);
+		assertSameClustering(lloyd, run(KMeans.Algorithm.ELKAN, false, 1));
+		assertSameClustering(lloyd, run(KMeans.Algorithm.HAMERLY, false, 1));
+		assertSameClustering(lloyd, run(KMeans.Algorithm.LLOYD, true, 1), 1e-9);
+	}
+
+	@Test
+	public void threadsDoNotChangeTheResult() {
+		for (KMeans.Algorithm algorithm : KMeans.Algorithm.values()) {
+			assertSameClustering(run(algorithm, false, 1), run(algorithm, false, 4));
+		}
+		assertSameClustering(run(KMeans.Algorithm.LLOYD, true, 1), run(KMeans.Algorithm.LLOYD, true, 4));
+	}
+
+}
@@ -0,0 +1,35 @@
+package cat.perez.kmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A fixed seed must always pick the same initial centroids, whatever the thread count.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class SeedingTest {
+
+	private static final int K = 10;
+
+	private static double [][] seed(Seeding seeding, long seed, int threads) {
+		return seeding.seed(Blobs.generate(20000, 4, K, 3, 1), K, new Random(seed), threads);
+	}
+
+	@Test
+	public void fixedSeedIsReproducible() {
+		for (Seeding seeding : Seeding.values()) {
+			double [][] expected = seed(seeding, 42, 1);
+			assertEquals(K, expected.length);
+			for (int threads : new int [] {1, 4}) {
+				double [][] actual = seed(seeding, 42, threads);
+				for (int k = 0; k < K; k++) assertArrayEquals(seeding + ", " + threads + " threads", expected[k], actual[k], 0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package cat.perez.xmeans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import cat.perez.Metrics;
+import cat.perez.kmeans.Blobs;
+
+/**
+ * X-Means must find the very same clusters with or without the kd-tree and for
+ * any thread count. Thread counts give bit-identical results; the kd-tree adds
+ * whole nodes up at once, so its centroids and scores may differ in the last bits.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class XMeansTest {
+
+	private static XMeans.Result run(boolean tree, int threads) {
+		XMeans xmeans = new XMeans(Blobs.generate(20000, 4, 6, 4, 1), 2, 12);
+		xmeans.setSeed(7);
+		xmeans.setKDTree(tree);
+		xmeans.setThreads(threads);
+		xmeans.run();
+		return xmeans.getBestAssignments();
+	}
+
+	private static void assertSameResult(XMeans.Result expected, XMeans.Result actual, double delta) {
+		assertEquals(expected.getScore(), actual.getScore(), delta * Math.abs(expected.getScore()));
+		assertArrayEquals(expected.getAssignments(), actual.getAssignments());
+		assertEquals(expected.getCentroids().length, actual.getCentroids().length);
+		for (int k = 0; k < expected.getCentroids().length; k++) {
+			assertArrayEquals(expected.getCentroids()[k], actual.getCentroids()[k], delta);
+		}
+	}
+
+	@Test
+	public void treeDoesNotChangeTheResult() {
+		assertSameResult(run(false, 1), run(true, 1), 1e-9);
+	}
+
+	@Test
+	public void threadsDoNotChangeTheResult() {
+		assertSameResult(run(false, 1), run(false, 4), 0);
+		assertSameResult(run(true, 1), run(true, 4), 0);
+	}
+
+	@Test
+	public void metricsKeepRoundsApart() {
+		XMeans xmeans = new XMeans(Blobs.generate(20000, 4, 6, 4, 1), 2, 12);
+		Metrics metrics = new Metrics();
+		xmeans.setSeed(7);
+		xmeans.setMetrics(metrics);
+		xmeans.run();
+		assertTrue(metrics.getIterations() > 0);
+		assertEquals(1, metrics.getRound(0));
+		assertEquals(2, metrics.getClusters(0));
+		for (int i = 1; i < metrics.getIterations(); i++) {
+			int round = metrics.getRound(i) - metrics.getRound(i - 1);
+			assertTrue(round == 0 || round == 1);
+			if (round == 0) assertEquals(metrics.getClusters(i - 1), metrics.getClusters(i));
+			else assertTrue(metrics.getClusters(i) > metrics.getClusters(i - 1));
+		}
+		assertTrue(metrics.getRound(metrics.getIterations() - 1) > 1);
+	}
+
+	@Test
+	public void seededMiniBatchIsReproducible() {
+		XMeans.Result [] results = new XMeans.Result [2];
+		for (int i = 0; i < results.length; i++) {
+			XMeans xmeans = new XMeans(Blobs.generate(20000, 4, 6, 4, 1), 2, 12);
+			xmeans.setSeed(7);
+			xmeans.setMiniBatch(500, 20);
+			xmeans.run();
+			results[i] = xmeans.getBestAssignments();
+		}
+		assertSameResult(results[0], results[1], 0);
+	}
+
+	@Test
+	public void clusteringTimeIsNotOverCounted() {
+		XMeans xmeans = new XMeans(Blobs.generate(20000, 4, 6, 4, 1), 2, 12);
+		Metrics metrics = new Metrics();
+		xmeans.setSeed(7);
+		xmeans.setThreads(4);
+		xmeans.setMetrics(metrics);
+		long start = System.nanoTime();
+		xmeans.run();
+		double wall = (System.nanoTime() - start) / 1e6;
+		// Split trials run their own K-Means concurrently, which must not add to the top level time
+		double clustering = metrics.getSummary().get(Metrics.CLUSTERING + " time (ms)");
+		double trials = metrics.getSummary().get(Metrics.SPLIT_TRIALS + " time (ms)");
+		assertTrue(clustering + trials + " ms of clustering and split trials in " + wall + " ms", clustering + trials <= wall);
+	}
+
+}
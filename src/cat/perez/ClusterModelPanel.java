@@ -0,0 +1,69 @@
+package cat.perez;
+
+import java.awt.BorderLayout;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+
+import org.knime.core.data.DataTableSpec;
+
+/**
+ * Shows a {@link ClusterModel}: its distance and one row per cluster with its size
+ * and its centroid, brought back from standardized to input units.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterModelPanel extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+
+	private final JLabel summary = new JLabel();
+	private final DefaultTableModel clusters = new DefaultTableModel() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean isCellEditable(int row, int column) {
+			return false;
+		}
+	};
+
+	public ClusterModelPanel() {
+		super(new BorderLayout());
+		add(summary, BorderLayout.NORTH);
+		add(new JScrollPane(new JTable(clusters)), BorderLayout.CENTER);
+		setModel(null, null);
+	}
+
+	/**
+	 * @param model the model to show, or null if the node has not been executed
+	 * @param centroidSpec the spec of the centroid table, to name the columns, may be null
+	 */
+	public void setModel(ClusterModel model, DataTableSpec centroidSpec) {
+		if (model == null) {
+			summary.setText("The node has not been executed");
+			clusters.setDataVector(new Object [0][], new Object [0]);
+			return;
+		}
+		int K = model.getK();
+		int D = model.getDimensions();
+		boolean named = centroidSpec != null && centroidSpec.getNumColumns() == D;
+		Object [] header = new Object [D + 2];
+		header[0] = "Cluster";
+		header[1] = "Rows";
+		for (int j = 0; j < D; j++) header[j + 2] = named ? centroidSpec.getColumnSpec(j).getName() : "Column " + j;
+		Object [][] rows = new Object [K][D + 2];
+		for (int k = 0; k < K; k++) {
+			rows[k][0] = k;
+			rows[k][1] = model.getSize(k);
+			for (int j = 0; j < D; j++) {
+				rows[k][j + 2] = ColumnStatistics.destandardize(model.getCentroid(k, j), model.getMean(j), model.getStdDev(j));
+			}
+		}
+		summary.setText(K + " clusters over " + D + " columns, assigned by the " + model.getDistance().name().toLowerCase() + " distance");
+		clusters.setDataVector(rows, header);
+	}
+
+}
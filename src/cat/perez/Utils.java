@@ -1,84 +1,252 @@
 package cat.perez;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnProperties;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DoubleValue;
 import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.container.SingleCellFactory;
+import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
+
+import cat.perez.kmeans.Dataset;
+import cat.perez.kmeans.Distance;
 
 public abstract class Utils {
-	
-	public static Map<Integer, Double> colAvg(BufferedDataTable in) {
-    	Map<Integer, Double> columnAvg = new HashMap<>();
-    	CloseableRowIterator it = in.iterator();
-    	while (it.hasNext()) {
-    		Iterator<DataCell> cellIterator = it.next().iterator();
-    		int index = 0;
-    		while (cellIterator.hasNext()) {
-    			DataCell cell = cellIterator.next();
-    			if (cell.getType().equals(IntCell.TYPE) || cell.getType().equals(DoubleCell.TYPE)) {
-    				DoubleValue dValue = ((DoubleValue) cell);
-    				columnAvg.put(index, columnAvg.getOrDefault(index, 0.0) + dValue.getDoubleValue() / in.size());
+
+	/** Name of the file in the node internals directory holding the {@link ClusterModel}. */
+	public static final String MODEL_FILE_NAME = "cluster-model.bin";
+
+	/** Column properties of the centroid table holding the statistics every column was standardized with. */
+	public static final String MEAN_PROPERTY = "Standardization mean";
+	public static final String STD_DEV_PROPERTY = "Standardization std dev";
+	/** Column property of the centroid table holding the {@link Distance} rows were assigned by. */
+	public static final String DISTANCE_PROPERTY = "Distance";
+
+	/**
+	 * Reads the table once into a primitive matrix, accumulating the column
+	 * statistics on the way, and standardizes the matrix in place.
+	 *
+	 * @param statistics empty statistics of as many columns as the table, gathered here
+	 */
+    public static Dataset standardize(BufferedDataTable in, ColumnStatistics statistics, Metrics metrics) {
+    	long start = System.nanoTime();
+    	int D = in.getDataTableSpec().getNumColumns();
+    	double [] values = new double [Dataset.length(in.size(), D)];
+		try (CloseableRowIterator it = in.iterator()) {
+			for (int offset = 0; it.hasNext(); offset += D) {
+				DataRow row = it.next();
+				for (int j = 0; j < D; j++) values[offset + j] = ((DoubleValue) row.getCell(j)).getDoubleValue();
+				statistics.add(values, offset);
+			}
+		}
+		long read = System.nanoTime();
+		statistics.standardize(values);
+		metrics.time(Metrics.INGEST, read - start);
+		metrics.time(Metrics.STANDARDIZATION, System.nanoTime() - read);
+    	return new Dataset(values, D);
+    }
+
+    /**
+     * Loads a setting the first version of the node did not have. Settings saved
+     * before it existed do not hold its key, and the model keeps its default.
+     */
+    public static void loadOptional(SettingsModel model, String key, NodeSettingsRO settings) throws InvalidSettingsException {
+    	if (settings.containsKey(key)) model.loadSettingsFrom(settings);
+    }
+
+    /**
+     * Validates a setting the first version of the node did not have, if present.
+     *
+     * @see #loadOptional(SettingsModel, String, NodeSettingsRO)
+     */
+    public static void validateOptional(SettingsModel model, String key, NodeSettingsRO settings) throws InvalidSettingsException {
+    	if (settings.containsKey(key)) model.validateSettings(settings);
+    }
+
+    /**
+     * @return the progress of a clustering run, reported to and cancelled from the
+     * given monitor, with its messages logged at debug level
+     */
+    public static Progress progressOf(ExecutionMonitor exec, NodeLogger logger) {
+    	return new Progress() {
+    		@Override
+    		public boolean isCanceled() {
+    			try {
+    				exec.checkCanceled();
+    				return false;
+    			} catch (CanceledExecutionException e) {
+    				return true;
     			}
-    			index++;
+    		}
+
+    		@Override
+    		public void report(double fraction, String message) {
+    			exec.setProgress(fraction, message);
+    		}
+
+    		@Override
+    		public void log(String message) {
+    			logger.debug(message);
+    		}
+    	};
+    }
+
+    /**
+     * Checks that a table of initial centroids has a numeric column named as every
+     * column of the input table. Other columns are ignored.
+     */
+    public static void checkCentroidSpec(DataTableSpec centroidSpec, DataTableSpec inSpec) throws InvalidSettingsException {
+    	for (DataColumnSpec column : inSpec) {
+    		DataColumnSpec centroidColumn = centroidSpec.getColumnSpec(column.getName());
+    		if (centroidColumn == null) throw new InvalidSettingsException("The initial centroids have no column \"" + column.getName() + "\"");
+    		if (!centroidColumn.getType().isCompatible(DoubleValue.class)) {
+    			throw new InvalidSettingsException("The initial centroid column \"" + column.getName() + "\" is not numeric");
     		}
     	}
-    	return columnAvg;
     }
-    
-    public static Map<Integer, Double> colStdDev(BufferedDataTable in) {
-    	Map<Integer, Double> columnAvg = colAvg(in);
-    	Map<Integer, Double> columnStdDev = new HashMap<>();
-    	CloseableRowIterator it = in.iterator();
-    	while (it.hasNext()) {
-    		Iterator<DataCell> cellIterator = it.next().iterator();
-    		int index = 0;
-    		while (cellIterator.hasNext()) {
-    			DataCell cell = cellIterator.next();
-    			if (cell.getType().equals(IntCell.TYPE) || cell.getType().equals(DoubleCell.TYPE)) {
-    				DoubleValue dValue = ((DoubleValue) cell);
-    				double value = columnStdDev.getOrDefault(index, 0.0);
-    				value += Math.pow(dValue.getDoubleValue() - columnAvg.get(index), 2) / (in.size() - 1);
-    				columnStdDev.put(index, value);
+
+    /**
+     * Reads a table of initial centroids, one per row, with its columns mapped by
+     * name onto those of the input table, see {@link #checkCentroidSpec(DataTableSpec, DataTableSpec)},
+     * and standardizes them as the input table was.
+     *
+     * Columns with the {@link #MEAN_PROPERTY} and {@link #STD_DEV_PROPERTY} of a
+     * centroid output are brought back to input units with them first; columns
+     * without either are taken as being in input units already.
+     *
+     * @param statistics the statistics the input table was standardized with
+     */
+    public static double [][] readCentroids(BufferedDataTable centroids, DataTableSpec inSpec, ColumnStatistics statistics) throws InvalidSettingsException {
+    	checkCentroidSpec(centroids.getDataTableSpec(), inSpec);
+    	int D = inSpec.getNumColumns();
+    	int [] columns = new int [D];
+    	double [] means = new double [D];
+    	double [] stdDevs = new double [D];
+    	boolean [] standardized = new boolean [D];
+    	for (int j = 0; j < D; j++) {
+    		columns[j] = centroids.getDataTableSpec().findColumnIndex(inSpec.getColumnSpec(j).getName());
+    		DataColumnSpec column = centroids.getDataTableSpec().getColumnSpec(columns[j]);
+    		DataColumnProperties properties = column.getProperties();
+    		boolean mean = properties.containsProperty(MEAN_PROPERTY);
+    		if (mean != properties.containsProperty(STD_DEV_PROPERTY)) {
+    			throw new InvalidSettingsException("The initial centroid column \"" + column.getName() + "\" has only one of its standardization parameters");
+    		}
+    		if (!mean) continue;
+    		try {
+    			means[j] = Double.parseDouble(properties.getProperty(MEAN_PROPERTY));
+    			stdDevs[j] = Double.parseDouble(properties.getProperty(STD_DEV_PROPERTY));
+    		} catch (NumberFormatException e) {
+    			throw new InvalidSettingsException("The initial centroid column \"" + column.getName() + "\" has invalid standardization parameters");
+    		}
+    		standardized[j] = true;
+    	}
+    	double [][] result = new double [(int) centroids.size()][D];
+    	try (CloseableRowIterator it = centroids.iterator()) {
+    		for (int k = 0; it.hasNext(); k++) {
+    			DataRow row = it.next();
+    			for (int j = 0; j < D; j++) {
+    				DataCell cell = row.getCell(columns[j]);
+    				if (cell.isMissing()) {
+    					throw new InvalidSettingsException("Initial centroid " + row.getKey().getString() + " has a missing value");
+    				}
+    				double value = ((DoubleValue) cell).getDoubleValue();
+    				if (standardized[j]) value = ColumnStatistics.destandardize(value, means[j], stdDevs[j]);
+    				result[k][j] = statistics.standardize(j, value);
     			}
-    			index++;
     		}
     	}
-    	columnStdDev.forEach((k, v) -> columnStdDev.put(k, Math.sqrt(v)));
-    	it.close();
-    	return columnStdDev;
+    	return result;
     }
-    
-    public static List<List<DataCell>> standardize(BufferedDataTable in) {
-    	List<List<DataCell>> out = new ArrayList<>();
-		CloseableRowIterator it = in.iterator();
-		Map<Integer, Double> columnAvg = colAvg(in);
-		Map<Integer, Double> columnStdDev = colStdDev(in);
-		while (it.hasNext()) {
-			DataRow row = it.next();
-			List<DataCell> cells = new ArrayList<>();
-			Iterator<DataCell> cellIterator = row.iterator();
-			int index = 0;
-			while (cellIterator.hasNext()) {
-				DataCell cell = cellIterator.next();
-				if (!(cell.getType().equals(IntCell.TYPE) || cell.getType().equals(DoubleCell.TYPE))) {
-					cells.add(cell);
-				} else {
-					DoubleValue dValue = ((DoubleValue) cell);
-					cells.add(new DoubleCell((dValue.getDoubleValue() - columnAvg.get(index)) / columnStdDev.get(index)));
-				}
-				index++;
-			}
-			out.add(cells);
-		}
-    	return out;
+
+    /**
+     * @return the given centroid spec with the mean and standard deviation of every
+     * column, and the distance, of the model attached as properties, so that nodes
+     * downstream can standardize and assign new rows alike
+     */
+    public static DataTableSpec withStandardization(DataTableSpec centroidSpec, ClusterModel model) {
+    	DataColumnSpec [] specs = new DataColumnSpec [centroidSpec.getNumColumns()];
+    	for (int j = 0; j < specs.length; j++) {
+    		Map<String, String> properties = new HashMap<>();
+    		properties.put(MEAN_PROPERTY, Double.toString(model.getMean(j)));
+    		properties.put(STD_DEV_PROPERTY, Double.toString(model.getStdDev(j)));
+    		properties.put(DISTANCE_PROPERTY, model.getDistance().name());
+    		DataColumnSpecCreator creator = new DataColumnSpecCreator(centroidSpec.getColumnSpec(j));
+    		creator.setProperties(new DataColumnProperties(properties));
+    		specs[j] = creator.createSpec();
+    	}
+    	return new DataTableSpec(specs);
+    }
+
+    /**
+     * Appends the cluster of every row of the input table as a <code>k</code> column,
+     * keeping the original cells. The rows must come in the order they were read,
+     * <code>assignments</code> may be null to only compute the spec.
+     */
+    public static ColumnRearranger createAssignmentRearranger(DataTableSpec inSpec, int [] assignments) {
+    	ColumnRearranger rearranger = new ColumnRearranger(inSpec);
+    	DataColumnSpec clusterSpec = new DataColumnSpecCreator(DataTableSpec.getUniqueColumnName(inSpec, "k"), IntCell.TYPE).createSpec();
+    	rearranger.append(new SingleCellFactory(clusterSpec) {
+    		private int index = 0;
+
+    		@Override
+    		public DataCell getCell(DataRow row) {
+    			return new IntCell(assignments[index++]);
+    		}
+    	});
+    	return rearranger;
+    }
+
+    /**
+     * @return the spec of the metrics table, one named value per row
+     */
+    public static DataTableSpec createMetricsSpec() {
+    	return new DataTableSpec(new DataColumnSpec [] {
+    			new DataColumnSpecCreator("Metric", StringCell.TYPE).createSpec(),
+    			new DataColumnSpecCreator("Value", DoubleCell.TYPE).createSpec()
+    	});
+    }
+
+    /**
+     * Writes the summary of the metrics followed by the rows moved and distances
+     * computed in each recorded iteration.
+     */
+    public static BufferedDataTable createMetricsTable(Metrics metrics, ExecutionContext exec) {
+    	BufferedDataContainer container = exec.createDataContainer(createMetricsSpec());
+    	int index = 0;
+    	for (Map.Entry<String, Double> entry : metrics.getSummary().entrySet()) {
+    		container.addRowToTable(metricsRow(index++, entry.getKey(), entry.getValue()));
+    	}
+    	// Iterations are numbered from 1 within each round, every X-Means round being one K-Means run
+    	for (int i = 0, iteration = 1; i < metrics.getIterations(); i++, iteration++) {
+    		if (i > 0 && metrics.getRound(i) != metrics.getRound(i - 1)) iteration = 1;
+    		String name = "Round " + metrics.getRound(i) + " (k=" + metrics.getClusters(i) + ") iteration " + iteration;
+    		container.addRowToTable(metricsRow(index++, name + " rows moved", metrics.getMoved(i)));
+    		container.addRowToTable(metricsRow(index++, name + " distance computations", metrics.getDistances(i)));
+    	}
+    	container.close();
+    	return container.getTable();
+    }
+
+    private static DataRow metricsRow(int index, String metric, double value) {
+    	return new DefaultRow("Row" + index, new DataCell [] {new StringCell(metric), new DoubleCell(value)});
     }
 }
@@ -0,0 +1,58 @@
+package cat.perez.assigner;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "ClusterAssignerNode" Node.
+ * 
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterAssignerNodeFactory 
+        extends NodeFactory<ClusterAssignerNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ClusterAssignerNodeModel createNodeModel() {
+        return new ClusterAssignerNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<ClusterAssignerNodeModel> createNodeView(final int viewIndex,
+            final ClusterAssignerNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return null;
+    }
+
+}
+
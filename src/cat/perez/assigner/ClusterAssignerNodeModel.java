@@ -0,0 +1,253 @@
+package cat.perez.assigner;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnProperties;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.ColumnRearranger;
+import org.knime.core.data.container.SingleCellFactory;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+
+import cat.perez.ClusterAssigner;
+import cat.perez.Utils;
+import cat.perez.kmeans.Distance;
+import cat.perez.kmeans.DistanceKernel;
+
+/**
+ * This is the model implementation of ClusterAssignerNode. Assigns every row of
+ * a table to the closest centroid of a K-Means or X-Means centroid table, after
+ * standardizing it as the clustered rows were.
+ *
+ * The centroids are read whole; the rows are scored one at a time, so the node
+ * streams in constant memory.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class ClusterAssignerNodeModel extends NodeModel {
+
+	private static final int CENTROID_PORT = 0;
+	private static final int DATA_PORT = 1;
+
+    /**
+     * Constructor for the node model.
+     */
+    protected ClusterAssignerNodeModel() {
+        super(2, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+            final ExecutionContext exec) throws Exception {
+    	ColumnRearranger rearranger = createColumnRearranger(inData[DATA_PORT].getDataTableSpec(), inData[CENTROID_PORT]);
+    	return new BufferedDataTable[] {exec.createColumnRearrangeTable(inData[DATA_PORT], rearranger, exec)};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+    	return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_NONSTREAMABLE, InputPortRole.DISTRIBUTED_STREAMABLE};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutputPortRole[] getOutputPortRoles() {
+    	return new OutputPortRole[] {OutputPortRole.DISTRIBUTED};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo,
+    		final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+    	return new StreamableOperator() {
+    		@Override
+    		public void runFinal(final PortInput[] inputs, final PortOutput[] outputs,
+    				final ExecutionContext exec) throws Exception {
+    			BufferedDataTable centroids = (BufferedDataTable) ((PortObjectInput) inputs[CENTROID_PORT]).getPortObject();
+    			ColumnRearranger rearranger = createColumnRearranger((DataTableSpec) inSpecs[DATA_PORT], centroids);
+    			rearranger.createStreamableFunction(DATA_PORT, 0).runFinal(inputs, outputs, exec);
+    		}
+    	};
+    }
+
+    private ColumnRearranger createColumnRearranger(DataTableSpec dataSpec, BufferedDataTable centroids) throws InvalidSettingsException {
+    	ColumnRearranger rearranger = new ColumnRearranger(dataSpec);
+    	rearranger.append(new Scorer(createClusterSpec(dataSpec), dataSpec, centroids));
+    	return rearranger;
+    }
+
+    private static DataColumnSpec createClusterSpec(DataTableSpec dataSpec) {
+    	return new DataColumnSpecCreator(DataTableSpec.getUniqueColumnName(dataSpec, "k"), IntCell.TYPE).createSpec();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void reset() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+            throws InvalidSettingsException {
+    	DataTableSpec dataSpec = inSpecs[DATA_PORT];
+    	for (DataColumnSpec column : inSpecs[CENTROID_PORT]) {
+    		if (!column.getType().isCompatible(DoubleValue.class)) {
+    			throw new InvalidSettingsException("The centroid column \"" + column.getName() + "\" is not numeric");
+    		}
+    		DataColumnSpec dataColumn = dataSpec.getColumnSpec(column.getName());
+    		if (dataColumn == null || !dataColumn.getType().isCompatible(DoubleValue.class)) {
+    			throw new InvalidSettingsException("The table to assign has no numeric column \"" + column.getName() + "\"");
+    		}
+    	}
+    	ColumnRearranger rearranger = new ColumnRearranger(dataSpec);
+    	rearranger.append(new SingleCellFactory(createClusterSpec(dataSpec)) {
+    		@Override
+    		public DataCell getCell(final DataRow row) {
+    			return DataType.getMissingCell();
+    		}
+    	});
+    	return new DataTableSpec [] {rearranger.createSpec()};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void loadInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void saveInternals(final File internDir,
+            final ExecutionMonitor exec) throws IOException,
+            CanceledExecutionException {
+    }
+
+    /**
+     * Labels each row with the closest centroid through a {@link ClusterAssigner},
+     * by the distance and with the same kernel as the K-Means assignment. Centroid
+     * tables without a distance property are taken as Euclidean. Rows with missing
+     * values get a missing cluster.
+     */
+    private static class Scorer extends SingleCellFactory {
+
+    	private final int [] columns;
+    	private final double [] row;
+    	private final ClusterAssigner assigner;
+
+    	private Scorer(DataColumnSpec clusterSpec, DataTableSpec dataSpec, BufferedDataTable centroidTable) throws InvalidSettingsException {
+    		super(clusterSpec);
+    		DataTableSpec centroidSpec = centroidTable.getDataTableSpec();
+    		int D = centroidSpec.getNumColumns();
+    		this.columns = new int [D];
+    		this.row = new double [D];
+    		double [] means = new double [D];
+    		double [] stdDevs = new double [D];
+    		Distance distance = Distance.EUCLIDEAN;
+    		for (int j = 0; j < D; j++) {
+    			DataColumnSpec column = centroidSpec.getColumnSpec(j);
+    			DataColumnProperties properties = column.getProperties();
+    			if (!properties.containsProperty(Utils.MEAN_PROPERTY) || !properties.containsProperty(Utils.STD_DEV_PROPERTY)) {
+    				throw new InvalidSettingsException("The centroid column \"" + column.getName() + "\" has no standardization parameters, "
+    						+ "connect the centroid output of a K-Means or X-Means node");
+    			}
+    			if (j == 0 && properties.containsProperty(Utils.DISTANCE_PROPERTY)) {
+    				try {
+    					distance = Distance.valueOf(properties.getProperty(Utils.DISTANCE_PROPERTY));
+    				} catch (IllegalArgumentException e) {
+    					throw new InvalidSettingsException("Unknown distance \"" + properties.getProperty(Utils.DISTANCE_PROPERTY) + "\" in the centroid table");
+    				}
+    			}
+    			this.columns[j] = dataSpec.findColumnIndex(column.getName());
+    			means[j] = Double.parseDouble(properties.getProperty(Utils.MEAN_PROPERTY));
+    			stdDevs[j] = Double.parseDouble(properties.getProperty(Utils.STD_DEV_PROPERTY));
+    		}
+    		int K = (int) centroidTable.size();
+    		if (K == 0) throw new InvalidSettingsException("The centroid table is empty");
+    		// Row-major, as the kernel reads them
+    		double [] centroids = new double [K * D];
+    		try (CloseableRowIterator it = centroidTable.iterator()) {
+    			for (int offset = 0; it.hasNext(); offset += D) {
+    				DataRow centroid = it.next();
+    				for (int j = 0; j < D; j++) centroids[offset + j] = ((DoubleValue) centroid.getCell(j)).getDoubleValue();
+    			}
+    		}
+    		this.assigner = new ClusterAssigner(centroids, means, stdDevs, distance, DistanceKernel.getDefault());
+    	}
+
+    	@Override
+    	public DataCell getCell(final DataRow dataRow) {
+    		for (int j = 0; j < row.length; j++) {
+    			DataCell cell = dataRow.getCell(columns[j]);
+    			if (cell.isMissing()) return DataType.getMissingCell();
+    			row[j] = ((DoubleValue) cell).getDoubleValue();
+    		}
+    		return new IntCell(assigner.assign(row));
+    	}
+
+    }
+
+}
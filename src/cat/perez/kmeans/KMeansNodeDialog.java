@@ -1,8 +1,15 @@
 package cat.perez.kmeans;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumberEdit;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
 /**
  * <code>NodeDialog</code> for the "KMeansNode" Node.
@@ -36,6 +43,73 @@ public class KMeansNodeDialog extends DefaultNodeSettingsPane {
         			KMeansNodeModel.CFGKEY_MAX_ITERATION,
         			KMeansNodeModel.DEFAULT_MAX_ITERATION),
         		"Choose max iteration amount:", 100, 20));
+        
+        addDialogComponent(new DialogComponentNumber(
+        		new SettingsModelIntegerBounded(
+        			KMeansNodeModel.CFGKEY_THREADS,
+        			KMeansNodeModel.DEFAULT_THREADS,
+        			1, 1024),
+        		"Threads:", 1, 5));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+        		new SettingsModelString(
+        			KMeansNodeModel.CFGKEY_ALGORITHM,
+        			KMeansNodeModel.DEFAULT_ALGORITHM),
+        		"Algorithm:", KMeansNodeModel.ALGORITHMS));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+        		new SettingsModelString(
+        			KMeansNodeModel.CFGKEY_SEEDING,
+        			KMeansNodeModel.DEFAULT_SEEDING),
+        		"Seeding:", KMeansNodeModel.SEEDINGS));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+        		new SettingsModelString(
+        			KMeansNodeModel.CFGKEY_DISTANCE,
+        			KMeansNodeModel.DEFAULT_DISTANCE),
+        		"Distance:", KMeansNodeModel.DISTANCES));
+        
+        addDialogComponent(new DialogComponentBoolean(
+        		new SettingsModelBoolean(KMeansNodeModel.CFGKEY_USE_SEED, false),
+        		"Use random seed"));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+        		new SettingsModelInteger(
+        			KMeansNodeModel.CFGKEY_SEED,
+        			KMeansNodeModel.DEFAULT_SEED),
+        		"Random seed:", 10));
+        
+        addDialogComponent(new DialogComponentNumber(
+        		new SettingsModelIntegerBounded(
+        			KMeansNodeModel.CFGKEY_BATCH_SIZE,
+        			KMeansNodeModel.DEFAULT_BATCH_SIZE,
+        			0, Integer.MAX_VALUE),
+        		"Mini-batch size (0 for full batch):", 100, 10));
+        
+        addDialogComponent(new DialogComponentNumber(
+        		new SettingsModelIntegerBounded(
+        			KMeansNodeModel.CFGKEY_BATCHES,
+        			KMeansNodeModel.DEFAULT_BATCHES,
+        			1, Integer.MAX_VALUE),
+        		"Mini-batches:", 10, 10));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+        		new SettingsModelDoubleBounded(
+        			KMeansNodeModel.CFGKEY_SHIFT_TOLERANCE,
+        			KMeansNodeModel.DEFAULT_TOLERANCE,
+        			0, 1),
+        		"Centroid shift tolerance (0 to disable):", 10));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+        		new SettingsModelDoubleBounded(
+        			KMeansNodeModel.CFGKEY_INERTIA_TOLERANCE,
+        			KMeansNodeModel.DEFAULT_TOLERANCE,
+        			0, 1),
+        		"Inertia tolerance (0 to disable):", 10));
+        
+        addDialogComponent(new DialogComponentBoolean(
+        		new SettingsModelBoolean(KMeansNodeModel.CFGKEY_FLOAT32, false),
+        		"Single precision distances (Lloyd, 50% more memory)"));
     }
 }
 
@@ -26,7 +26,7 @@ public class KMeansNodeFactory
      */
     @Override
     public int getNrNodeViews() {
-        return 0;
+        return 1;
     }
 
     /**
@@ -35,7 +35,7 @@ public class KMeansNodeFactory
     @Override
     public NodeView<KMeansNodeModel> createNodeView(final int viewIndex,
             final KMeansNodeModel nodeModel) {
-        return null;
+        return new KMeansNodeView(nodeModel);
     }
 
     /**
@@ -4,34 +4,37 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
-import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
-import org.knime.core.data.DoubleValue;
-import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
-import org.knime.core.data.def.IntCell;
 import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortType;
 
+import cat.perez.ClusterModel;
+import cat.perez.ColumnStatistics;
+import cat.perez.Metrics;
 import cat.perez.Utils;
 import cat.perez.xmeans.XMeans;
 
@@ -43,30 +46,92 @@ import cat.perez.xmeans.XMeans;
  * @author Unai & Vicent Perez
  */
 public class KMeansNodeModel extends NodeModel {
+    
+    // the logger instance
+    private static final NodeLogger logger = NodeLogger
+            .getLogger(KMeansNodeModel.class);
         
     /** the settings key which is used to retrieve and 
         store the settings (from the dialog or from a settings file)    
        (package visibility to be usable from the dialog). */
 	static final String CFGKEY_CLUSTER_AMOUNT = "k";
 	static final String CFGKEY_MAX_ITERATION = "Max iterations";
+	static final String CFGKEY_THREADS = "Threads";
+	static final String CFGKEY_ALGORITHM = "Algorithm";
+	static final String CFGKEY_SEEDING = "Seeding";
+	static final String CFGKEY_USE_SEED = "Use random seed";
+	static final String CFGKEY_SEED = "Random seed";
+	static final String CFGKEY_BATCH_SIZE = "Mini-batch size";
+	static final String CFGKEY_BATCHES = "Mini-batches";
+	static final String CFGKEY_SHIFT_TOLERANCE = "Centroid shift tolerance";
+	static final String CFGKEY_INERTIA_TOLERANCE = "Inertia tolerance";
+	static final String CFGKEY_FLOAT32 = "Single precision";
+	static final String CFGKEY_DISTANCE = "Distance";
 
     /** initial default count value. */
     static final int DEFAULT_CLUSTER_AMOUNT = 3;
     
     static final Integer DEFAULT_MAX_ITERATION = 1000000;
+    
+    static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+    
+    static final String DEFAULT_ALGORITHM = KMeans.Algorithm.AUTO.name();
+    
+    static final String [] ALGORITHMS = Arrays.stream(KMeans.Algorithm.values()).map(Enum::name).toArray(String []::new);
+    
+    static final String DEFAULT_SEEDING = Seeding.KMEANS_PLUS_PLUS.name();
+    
+    static final String [] SEEDINGS = Arrays.stream(Seeding.values()).map(Enum::name).toArray(String []::new);
+    
+    static final String DEFAULT_DISTANCE = Distance.EUCLIDEAN.name();
+    
+    static final String [] DISTANCES = Arrays.stream(Distance.values()).map(Enum::name).toArray(String []::new);
+    
+    static final int DEFAULT_SEED = 42;
+    
+    /** 0 runs the full batch iterations. */
+    static final int DEFAULT_BATCH_SIZE = 0;
+    
+    static final int DEFAULT_BATCHES = 100;
+    
+    /** 0 stops only once no row changes cluster. */
+    static final double DEFAULT_TOLERANCE = 0;
 
     private final SettingsModelInteger m_cluster_amount =
     		new SettingsModelInteger(CFGKEY_CLUSTER_AMOUNT, DEFAULT_CLUSTER_AMOUNT);
     private final SettingsModelInteger m_max_iterations = 
     		new SettingsModelInteger(CFGKEY_MAX_ITERATION, DEFAULT_MAX_ITERATION);
-    private DataTableSpec dataOutputSpec;
+    private final SettingsModelIntegerBounded m_threads =
+    		new SettingsModelIntegerBounded(CFGKEY_THREADS, DEFAULT_THREADS, 1, 1024);
+    private final SettingsModelString m_algorithm =
+    		new SettingsModelString(CFGKEY_ALGORITHM, DEFAULT_ALGORITHM);
+    private final SettingsModelString m_seeding =
+    		new SettingsModelString(CFGKEY_SEEDING, DEFAULT_SEEDING);
+    private final SettingsModelBoolean m_use_seed =
+    		new SettingsModelBoolean(CFGKEY_USE_SEED, false);
+    private final SettingsModelInteger m_seed =
+    		new SettingsModelInteger(CFGKEY_SEED, DEFAULT_SEED);
+    private final SettingsModelIntegerBounded m_batch_size =
+    		new SettingsModelIntegerBounded(CFGKEY_BATCH_SIZE, DEFAULT_BATCH_SIZE, 0, Integer.MAX_VALUE);
+    private final SettingsModelIntegerBounded m_batches =
+    		new SettingsModelIntegerBounded(CFGKEY_BATCHES, DEFAULT_BATCHES, 1, Integer.MAX_VALUE);
+    private final SettingsModelDoubleBounded m_shift_tolerance =
+    		new SettingsModelDoubleBounded(CFGKEY_SHIFT_TOLERANCE, DEFAULT_TOLERANCE, 0, 1);
+    private final SettingsModelDoubleBounded m_inertia_tolerance =
+    		new SettingsModelDoubleBounded(CFGKEY_INERTIA_TOLERANCE, DEFAULT_TOLERANCE, 0, 1);
+    private final SettingsModelBoolean m_float32 =
+    		new SettingsModelBoolean(CFGKEY_FLOAT32, false);
+    private final SettingsModelString m_distance =
+    		new SettingsModelString(CFGKEY_DISTANCE, DEFAULT_DISTANCE);
     private DataTableSpec centroidSpec;
+    private ClusterModel model;
     
     /**
      * Constructor for the node model.
      */
     protected KMeansNodeModel() {
-        super(1, 2);
+        super(new PortType [] {BufferedDataTable.TYPE, BufferedDataTable.TYPE_OPTIONAL},
+        		new PortType [] {BufferedDataTable.TYPE, BufferedDataTable.TYPE, BufferedDataTable.TYPE});
     }
 
     /**
@@ -76,39 +141,63 @@ public class KMeansNodeModel extends NodeModel {
     protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
             final ExecutionContext exec) throws Exception {
     	BufferedDataTable table = inData[0];
-    	BufferedDataContainer outTable = exec.createDataContainer(this.dataOutputSpec);
-    	//Map<String, List<Number>> dataset = new HashMap<>();
-    	Map<String, List<Number>> standardizedDataset = new HashMap<>();
-    	int index = 0;
-    	CloseableRowIterator it = table.iterator();
-    	List<List<DataCell>> standardizedData = Utils.standardize(table);
-    	while (it.hasNext()) {
-    		List<DataCell> l = standardizedData.get(index);
-    		DataRow dataRow = it.next();
-    		//dataset.put(dataRow.getKey().getString(), dataRow.stream().map(c -> ((DoubleValue) c).getDoubleValue()).collect(Collectors.toList()));
-    		standardizedDataset.put(dataRow.getKey().getString(), l.stream().map(c -> ((DoubleValue) c).getDoubleValue()).collect(Collectors.toList()));
-    		index++;
-    	}
-    	it.close();
-    	KMeans kmeans = KMeans.fromNumberList(standardizedDataset, this.m_cluster_amount.getIntValue(), this.m_max_iterations.getIntValue());
-		kmeans.run();
-		kmeans.getAssignments().forEach((k, v) -> standardizedDataset.get(k).add(v.getAssignment()));
-		standardizedDataset.forEach((key, v) -> {
-			List<DataCell> cells = v.stream().map(n -> {
-				if (n instanceof Integer) return new IntCell((Integer) n); 
-				else /*if (n instanceof Double)*/ return new DoubleCell((Double) n);
-			}).collect(Collectors.toList());
-			outTable.addRowToTable(new DefaultRow(key, cells));
-		});
-		it.close();
-		outTable.close();
-		BufferedDataContainer centroidTable = exec.createDataContainer(this.centroidSpec);
-		kmeans.getCentroids().forEach((k, v) -> {
-			List<DataCell> coordCells = Arrays.asList(v).stream().map(DoubleCell::new).collect(Collectors.toList());
-			centroidTable.addRowToTable(new DefaultRow(k.toString(), coordCells));
-		});
+    	Metrics metrics = new Metrics();
+    	ColumnStatistics columns = new ColumnStatistics(table.getDataTableSpec().getNumColumns());
+    	Dataset standardizedDataset = Utils.standardize(table, columns, metrics);
+    	KMeans kmeans = new KMeans(standardizedDataset, this.m_cluster_amount.getIntValue(), this.m_max_iterations.getIntValue());
+		kmeans.setThreads(this.m_threads.getIntValue());
+		kmeans.setAlgorithm(KMeans.Algorithm.valueOf(this.m_algorithm.getStringValue()));
+		kmeans.setSeeding(Seeding.valueOf(this.m_seeding.getStringValue()));
+		if (this.m_use_seed.getBooleanValue()) kmeans.setSeed(this.m_seed.getIntValue());
+		kmeans.setMiniBatch(this.m_batch_size.getIntValue(), this.m_batches.getIntValue());
+		kmeans.setTolerances(this.m_shift_tolerance.getDoubleValue(), this.m_inertia_tolerance.getDoubleValue());
+		kmeans.setFloat32(this.m_float32.getBooleanValue());
+		Distance distance = Distance.valueOf(this.m_distance.getStringValue());
+		kmeans.setDistance(distance);
+		kmeans.setMetrics(metrics);
+		if (inData[1] != null) {
+			double [][] initial = Utils.readCentroids(inData[1], table.getDataTableSpec(), columns);
+			if (initial.length != this.m_cluster_amount.getIntValue()) {
+				throw new InvalidSettingsException("Got " + initial.length + " initial centroids for " + this.m_cluster_amount.getIntValue() + " clusters");
+			}
+			kmeans.setCentroids(initial);
+		}
+		kmeans.setProgress(Utils.progressOf(exec, logger));
+		try {
+			kmeans.run();
+		} catch (CancellationException e) {
+			exec.checkCanceled();
+			throw e;
+		}
+		Dataset assignments = kmeans.getAssignments();
+		BufferedDataTable outTable = exec.createColumnRearrangeTable(table, Utils.createAssignmentRearranger(table.getDataTableSpec(), assignments.getAssignments()), exec);
+		double [][] centroids = kmeans.getCentroids();
+		this.model = new ClusterModel(centroids, assignments.getAssignments(), columns, distance);
+		BufferedDataContainer centroidTable = exec.createDataContainer(Utils.withStandardization(this.centroidSpec, this.model));
+		for (int k = 0; k < centroids.length; k++) {
+			List<DataCell> coordCells = Arrays.stream(centroids[k]).mapToObj(DoubleCell::new).collect(Collectors.toList());
+			centroidTable.addRowToTable(new DefaultRow(Integer.toString(k), coordCells));
+		}
 		centroidTable.close();
-		return new BufferedDataTable[] {outTable.getTable(), centroidTable.getTable()};
+		for (Map.Entry<String, Double> metric : metrics.getSummary().entrySet()) {
+			pushFlowVariableDouble("K-Means " + metric.getKey(), metric.getValue());
+		}
+		return new BufferedDataTable[] {outTable, centroidTable.getTable(), Utils.createMetricsTable(metrics, exec)};
+    }
+
+    /**
+     * @return the model of the last execution, written to and read from the node
+     * internals, or null if the node has not been executed
+     */
+    ClusterModel getClusterModel() {
+    	return this.model;
+    }
+
+    /**
+     * @return the spec of the centroid output, or null if the node has not been configured
+     */
+    DataTableSpec getCentroidSpec() {
+    	return this.centroidSpec;
     }
 
     /**
@@ -116,6 +205,7 @@ public class KMeansNodeModel extends NodeModel {
      */
     @Override
     protected void reset() {
+    	this.model = null;
     }
 
     /**
@@ -125,16 +215,13 @@ public class KMeansNodeModel extends NodeModel {
     protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
             throws InvalidSettingsException {
     	DataTableSpec inSpec = inSpecs[0];
-    	List<DataColumnSpec> outputColSpec = new ArrayList<>();
+    	if (inSpecs[1] != null) Utils.checkCentroidSpec(inSpecs[1], inSpec);
     	List<DataColumnSpec> centroidColSpec = new ArrayList<>();
-    	inSpec.forEach(outputColSpec::add);
     	inSpec.forEach(c -> centroidColSpec.add(new DataColumnSpecCreator(c.getName(), DoubleCell.TYPE).createSpec()));
-    	outputColSpec.add(new DataColumnSpecCreator("k", IntCell.TYPE).createSpec());
-    	DataTableSpec outSpec = new DataTableSpec(outputColSpec.toArray(new DataColumnSpec [0]));
+    	DataTableSpec outSpec = Utils.createAssignmentRearranger(inSpec, null).createSpec();
     	DataTableSpec centroidSpec = new DataTableSpec(centroidColSpec.toArray(new DataColumnSpec [0]));
-    	this.dataOutputSpec = outSpec;
     	this.centroidSpec = centroidSpec;
-    	return new DataTableSpec [] {outSpec, centroidSpec};
+    	return new DataTableSpec [] {outSpec, centroidSpec, Utils.createMetricsSpec()};
     }
 
     /**
@@ -144,6 +231,17 @@ public class KMeansNodeModel extends NodeModel {
     protected void saveSettingsTo(final NodeSettingsWO settings) {
         m_cluster_amount.saveSettingsTo(settings);
         m_max_iterations.saveSettingsTo(settings);
+        m_threads.saveSettingsTo(settings);
+        m_algorithm.saveSettingsTo(settings);
+        m_seeding.saveSettingsTo(settings);
+        m_use_seed.saveSettingsTo(settings);
+        m_seed.saveSettingsTo(settings);
+        m_batch_size.saveSettingsTo(settings);
+        m_batches.saveSettingsTo(settings);
+        m_shift_tolerance.saveSettingsTo(settings);
+        m_inertia_tolerance.saveSettingsTo(settings);
+        m_float32.saveSettingsTo(settings);
+        m_distance.saveSettingsTo(settings);
     }
 
     /**
@@ -154,6 +252,17 @@ public class KMeansNodeModel extends NodeModel {
             throws InvalidSettingsException {        
         m_cluster_amount.loadSettingsFrom(settings);
     	m_max_iterations.loadSettingsFrom(settings);
+    	Utils.loadOptional(m_threads, CFGKEY_THREADS, settings);
+    	Utils.loadOptional(m_algorithm, CFGKEY_ALGORITHM, settings);
+    	Utils.loadOptional(m_seeding, CFGKEY_SEEDING, settings);
+    	Utils.loadOptional(m_use_seed, CFGKEY_USE_SEED, settings);
+    	Utils.loadOptional(m_seed, CFGKEY_SEED, settings);
+    	Utils.loadOptional(m_batch_size, CFGKEY_BATCH_SIZE, settings);
+    	Utils.loadOptional(m_batches, CFGKEY_BATCHES, settings);
+    	Utils.loadOptional(m_shift_tolerance, CFGKEY_SHIFT_TOLERANCE, settings);
+    	Utils.loadOptional(m_inertia_tolerance, CFGKEY_INERTIA_TOLERANCE, settings);
+    	Utils.loadOptional(m_float32, CFGKEY_FLOAT32, settings);
+    	Utils.loadOptional(m_distance, CFGKEY_DISTANCE, settings);
     }
 
     /**
@@ -165,6 +274,17 @@ public class KMeansNodeModel extends NodeModel {
     	
         m_cluster_amount.validateSettings(settings);
         m_max_iterations.validateSettings(settings);
+        Utils.validateOptional(m_threads, CFGKEY_THREADS, settings);
+        Utils.validateOptional(m_algorithm, CFGKEY_ALGORITHM, settings);
+        Utils.validateOptional(m_seeding, CFGKEY_SEEDING, settings);
+        Utils.validateOptional(m_use_seed, CFGKEY_USE_SEED, settings);
+        Utils.validateOptional(m_seed, CFGKEY_SEED, settings);
+        Utils.validateOptional(m_batch_size, CFGKEY_BATCH_SIZE, settings);
+        Utils.validateOptional(m_batches, CFGKEY_BATCHES, settings);
+        Utils.validateOptional(m_shift_tolerance, CFGKEY_SHIFT_TOLERANCE, settings);
+        Utils.validateOptional(m_inertia_tolerance, CFGKEY_INERTIA_TOLERANCE, settings);
+        Utils.validateOptional(m_float32, CFGKEY_FLOAT32, settings);
+        Utils.validateOptional(m_distance, CFGKEY_DISTANCE, settings);
 
     }
     
@@ -175,6 +295,8 @@ public class KMeansNodeModel extends NodeModel {
     protected void loadInternals(final File internDir,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
+    	File file = new File(internDir, Utils.MODEL_FILE_NAME);
+    	if (file.exists()) this.model = ClusterModel.read(file);
     }
     
     /**
@@ -184,6 +306,7 @@ public class KMeansNodeModel extends NodeModel {
     protected void saveInternals(final File internDir,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
+    	if (this.model != null) this.model.write(new File(internDir, Utils.MODEL_FILE_NAME));
     }
 
 }
@@ -2,14 +2,18 @@ package cat.perez.kmeans;
 
 import org.knime.core.node.NodeView;
 
+import cat.perez.ClusterModelPanel;
+
 /**
- * <code>NodeView</code> for the "KMeansNode" Node.
- * 
+ * <code>NodeView</code> for the "KMeansNode" Node. Shows the size and centroid of every
+ * cluster of the last execution, from the model kept in the node internals.
  *
  * @author Unai & Vicent Perez
  */
 public class KMeansNodeView extends NodeView<KMeansNodeModel> {
 
+    private final ClusterModelPanel panel = new ClusterModelPanel();
+
     /**
      * Creates a new view.
      * 
@@ -17,9 +21,7 @@ public class KMeansNodeView extends NodeView<KMeansNodeModel> {
      */
     protected KMeansNodeView(final KMeansNodeModel nodeModel) {
         super(nodeModel);
-
-        // TODO instantiate the components of the view here.
-
+        setComponent(panel);
     }
 
     /**
@@ -27,16 +29,10 @@ public class KMeansNodeView extends NodeView<KMeansNodeModel> {
      */
     @Override
     protected void modelChanged() {
-
-        // TODO retrieve the new model from your nodemodel and 
-        // update the view.
         KMeansNodeModel nodeModel = 
             (KMeansNodeModel)getNodeModel();
         assert nodeModel != null;
-        
-        // be aware of a possibly not executed nodeModel! The data you retrieve
-        // from your nodemodel could be null, emtpy, or invalid in any kind.
-        
+        panel.setModel(nodeModel.getClusterModel(), nodeModel.getCentroidSpec());
     }
 
     /**
@@ -44,8 +40,6 @@ public class KMeansNodeView extends NodeView<KMeansNodeModel> {
      */
     @Override
     protected void onClose() {
-    
-        // TODO things to do when closing the view
     }
 
     /**
@@ -53,9 +47,7 @@ public class KMeansNodeView extends NodeView<KMeansNodeModel> {
      */
     @Override
     protected void onOpen() {
-
-        // TODO things to do when opening the view
+        modelChanged();
     }
 
 }
-
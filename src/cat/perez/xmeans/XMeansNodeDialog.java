@@ -1,8 +1,15 @@
 package cat.perez.xmeans;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumberEdit;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
 /**
  * <code>NodeDialog</code> for the "XMeans" Node.
@@ -45,6 +52,77 @@ public class XMeansNodeDialog extends DefaultNodeSettingsPane {
                     XMeansNodeModel.DEFAULT_MAX_ITERATIONS,
                     1000, 1000000000),
                     "Max iterations for K-Means:", /*step*/ 1000, /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(
+                    XMeansNodeModel.CFGKEY_THREADS,
+                    XMeansNodeModel.DEFAULT_THREADS,
+                    1, 1024),
+                    "Threads:", /*step*/ 1, /*componentwidth*/ 5));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(
+                    XMeansNodeModel.CFGKEY_ALGORITHM,
+                    XMeansNodeModel.DEFAULT_ALGORITHM),
+                    "K-Means algorithm:", XMeansNodeModel.ALGORITHMS));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(
+                    XMeansNodeModel.CFGKEY_SEEDING,
+                    XMeansNodeModel.DEFAULT_SEEDING),
+                    "Seeding:", XMeansNodeModel.SEEDINGS));
+        
+        addDialogComponent(new DialogComponentStringSelection(
+                new SettingsModelString(
+                    XMeansNodeModel.CFGKEY_DISTANCE,
+                    XMeansNodeModel.DEFAULT_DISTANCE),
+                    "Distance:", XMeansNodeModel.DISTANCES));
+        
+        addDialogComponent(new DialogComponentBoolean(
+                new SettingsModelBoolean(XMeansNodeModel.CFGKEY_USE_SEED, false),
+                    "Use random seed"));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+                new SettingsModelInteger(
+                    XMeansNodeModel.CFGKEY_SEED,
+                    XMeansNodeModel.DEFAULT_SEED),
+                    "Random seed:", /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(
+                    XMeansNodeModel.CFGKEY_BATCH_SIZE,
+                    XMeansNodeModel.DEFAULT_BATCH_SIZE,
+                    0, Integer.MAX_VALUE),
+                    "Mini-batch size (0 for full batch):", /*step*/ 100, /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentNumber(
+                new SettingsModelIntegerBounded(
+                    XMeansNodeModel.CFGKEY_BATCHES,
+                    XMeansNodeModel.DEFAULT_BATCHES,
+                    1, Integer.MAX_VALUE),
+                    "Mini-batches:", /*step*/ 10, /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentBoolean(
+                new SettingsModelBoolean(XMeansNodeModel.CFGKEY_KD_TREE, false),
+                    "Use kd-tree"));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+                new SettingsModelDoubleBounded(
+                    XMeansNodeModel.CFGKEY_SHIFT_TOLERANCE,
+                    XMeansNodeModel.DEFAULT_TOLERANCE,
+                    0, 1),
+                    "Centroid shift tolerance (0 to disable):", /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentNumberEdit(
+                new SettingsModelDoubleBounded(
+                    XMeansNodeModel.CFGKEY_INERTIA_TOLERANCE,
+                    XMeansNodeModel.DEFAULT_TOLERANCE,
+                    0, 1),
+                    "Inertia tolerance (0 to disable):", /*componentwidth*/ 10));
+        
+        addDialogComponent(new DialogComponentBoolean(
+                new SettingsModelBoolean(XMeansNodeModel.CFGKEY_FLOAT32, false),
+                    "Single precision distances (Lloyd, 50% more memory)"));
                     
     }
 }
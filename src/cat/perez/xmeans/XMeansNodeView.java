@@ -2,14 +2,18 @@ package cat.perez.xmeans;
 
 import org.knime.core.node.NodeView;
 
+import cat.perez.ClusterModelPanel;
+
 /**
- * <code>NodeView</code> for the "XMeans" Node.
- * 
+ * <code>NodeView</code> for the "XMeans" Node. Shows the size and centroid of every
+ * cluster of the last execution, from the model kept in the node internals.
  *
  * @author Unai & Vicent Perez
  */
 public class XMeansNodeView extends NodeView<XMeansNodeModel> {
 
+    private final ClusterModelPanel panel = new ClusterModelPanel();
+
     /**
      * Creates a new view.
      * 
@@ -17,9 +21,7 @@ public class XMeansNodeView extends NodeView<XMeansNodeModel> {
      */
     protected XMeansNodeView(final XMeansNodeModel nodeModel) {
         super(nodeModel);
-
-        // TODO instantiate the components of the view here.
-
+        setComponent(panel);
     }
 
     /**
@@ -27,16 +29,10 @@ public class XMeansNodeView extends NodeView<XMeansNodeModel> {
      */
     @Override
     protected void modelChanged() {
-
-        // TODO retrieve the new model from your nodemodel and 
-        // update the view.
         XMeansNodeModel nodeModel = 
             (XMeansNodeModel)getNodeModel();
         assert nodeModel != null;
-        
-        // be aware of a possibly not executed nodeModel! The data you retrieve
-        // from your nodemodel could be null, emtpy, or invalid in any kind.
-        
+        panel.setModel(nodeModel.getClusterModel(), nodeModel.getCentroidSpec());
     }
 
     /**
@@ -44,8 +40,6 @@ public class XMeansNodeView extends NodeView<XMeansNodeModel> {
      */
     @Override
     protected void onClose() {
-    
-        // TODO things to do when closing the view
     }
 
     /**
@@ -53,8 +47,7 @@ public class XMeansNodeView extends NodeView<XMeansNodeModel> {
      */
     @Override
     protected void onOpen() {
-
-        // TODO things to do when opening the view
+        modelChanged();
     }
 
 }
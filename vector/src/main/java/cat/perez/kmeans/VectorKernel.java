@@ -0,0 +1,165 @@
+package cat.perez.kmeans;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link DistanceKernel} on the Vector API: the coordinates are subtracted and
+ * squared, or multiplied, a full register at a time with fused multiply-adds,
+ * and the lanes are only added up once per centroid. Doubles use the widest species of the CPU;
+ * floats use it only for long rows, and otherwise as many lanes as the doubles,
+ * as adding up twice the lanes for every centroid costs more than the halved
+ * loads save.
+ *
+ * Loaded by {@link DistanceKernel#getDefault()} through reflection.
+ *
+ * @author Unai & Vicent Perez
+ */
+public class VectorKernel extends DistanceKernel {
+
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	/** As many float lanes as double ones, so that short rows do not pay for a wide reduction */
+	private static final VectorSpecies<Float> NARROW_FLOATS = VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+	/** Shortest rows that fill four registers of the widest float species */
+	private static final int WIDE_FLOATS_D = 4 * FLOATS.length();
+
+	public VectorKernel() {
+		// Fails here, and not in the middle of a run, when the module is missing
+		DoubleVector.zero(DOUBLES);
+	}
+
+	@Override
+	public double squaredDistance(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+		int bound = DOUBLES.loopBound(D);
+		int j = 0;
+		double sum = 0;
+		if (bound > 0) {
+			DoubleVector sums = DoubleVector.zero(DOUBLES);
+			for (; j < bound; j += DOUBLES.length()) {
+				DoubleVector diff = DoubleVector.fromArray(DOUBLES, values, offset + j)
+						.sub(DoubleVector.fromArray(DOUBLES, centroids, centroidOffset + j));
+				sums = diff.fma(diff, sums);
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) {
+			double diff = values[offset + j] - centroids[centroidOffset + j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Override
+	public float squaredDistance(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		return D >= WIDE_FLOATS_D ? squaredDistance(FLOATS, values, offset, centroids, centroidOffset, D)
+				: squaredDistance(NARROW_FLOATS, values, offset, centroids, centroidOffset, D);
+	}
+
+	private static float squaredDistance(VectorSpecies<Float> species, float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		int bound = species.loopBound(D);
+		int j = 0;
+		float sum = 0;
+		if (bound > 0) {
+			FloatVector sums = FloatVector.zero(species);
+			for (; j < bound; j += species.length()) {
+				FloatVector diff = FloatVector.fromArray(species, values, offset + j)
+						.sub(FloatVector.fromArray(species, centroids, centroidOffset + j));
+				sums = diff.fma(diff, sums);
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) {
+			float diff = values[offset + j] - centroids[centroidOffset + j];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Override
+	public double manhattanDistance(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+		int bound = DOUBLES.loopBound(D);
+		int j = 0;
+		double sum = 0;
+		if (bound > 0) {
+			DoubleVector sums = DoubleVector.zero(DOUBLES);
+			for (; j < bound; j += DOUBLES.length()) {
+				sums = sums.add(DoubleVector.fromArray(DOUBLES, values, offset + j)
+						.sub(DoubleVector.fromArray(DOUBLES, centroids, centroidOffset + j)).abs());
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) sum += Math.abs(values[offset + j] - centroids[centroidOffset + j]);
+		return sum;
+	}
+
+	@Override
+	public float manhattanDistance(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		return D >= WIDE_FLOATS_D ? manhattanDistance(FLOATS, values, offset, centroids, centroidOffset, D)
+				: manhattanDistance(NARROW_FLOATS, values, offset, centroids, centroidOffset, D);
+	}
+
+	private static float manhattanDistance(VectorSpecies<Float> species, float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		int bound = species.loopBound(D);
+		int j = 0;
+		float sum = 0;
+		if (bound > 0) {
+			FloatVector sums = FloatVector.zero(species);
+			for (; j < bound; j += species.length()) {
+				sums = sums.add(FloatVector.fromArray(species, values, offset + j)
+						.sub(FloatVector.fromArray(species, centroids, centroidOffset + j)).abs());
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) sum += Math.abs(values[offset + j] - centroids[centroidOffset + j]);
+		return sum;
+	}
+
+	@Override
+	public double dot(double [] values, int offset, double [] centroids, int centroidOffset, int D) {
+		int bound = DOUBLES.loopBound(D);
+		int j = 0;
+		double sum = 0;
+		if (bound > 0) {
+			DoubleVector sums = DoubleVector.zero(DOUBLES);
+			for (; j < bound; j += DOUBLES.length()) {
+				sums = DoubleVector.fromArray(DOUBLES, values, offset + j)
+						.fma(DoubleVector.fromArray(DOUBLES, centroids, centroidOffset + j), sums);
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) sum += values[offset + j] * centroids[centroidOffset + j];
+		return sum;
+	}
+
+	@Override
+	public float dot(float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		return D >= WIDE_FLOATS_D ? dot(FLOATS, values, offset, centroids, centroidOffset, D)
+				: dot(NARROW_FLOATS, values, offset, centroids, centroidOffset, D);
+	}
+
+	private static float dot(VectorSpecies<Float> species, float [] values, int offset, float [] centroids, int centroidOffset, int D) {
+		int bound = species.loopBound(D);
+		int j = 0;
+		float sum = 0;
+		if (bound > 0) {
+			FloatVector sums = FloatVector.zero(species);
+			for (; j < bound; j += species.length()) {
+				sums = FloatVector.fromArray(species, values, offset + j)
+						.fma(FloatVector.fromArray(species, centroids, centroidOffset + j), sums);
+			}
+			sum = sums.reduceLanes(VectorOperators.ADD);
+		}
+		for (; j < D; j++) sum += values[offset + j] * centroids[centroidOffset + j];
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return "VECTOR " + DOUBLES.length() + "x64";
+	}
+
+}